@@ -0,0 +1,13 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Binds a controller parameter of type {@link org.mhacioglu.peaktrackserver.model.AuthenticatedUser}
+ * to the principal of the current request.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,68 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhacioglu.peaktrackserver.service.DataVersionService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.function.SingletonSupplier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the replicas listed under {@code peaktrack.datasource.replicas}
+ * and everything else to the primary configured under {@code spring.datasource}. Without
+ * replicas this configuration stays off and every transaction uses the primary.
+ *
+ * <p>{@link DataSourceConfig}'s data source only fetches a connection once a transaction
+ * runs its first statement, by which time it is known whether the transaction is read-only.
+ * Replica pools take the primary's {@code spring.datasource.hikari} settings and are read-only.
+ */
+@Configuration
+@ConditionalOnProperty(name = "peaktrack.datasource.replicas[0].url")
+public class ReplicaRoutingConfig {
+
+    /**
+     * @param name shows up in logs and metrics; defaults to {@code replica-<n>}
+     */
+    public record ReplicaProperties(String name, String url, String username, String password) {
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             Environment environment,
+                                                             ObjectProvider<DataVersionService> dataVersionService,
+                                                             MeterRegistry meterRegistry,
+                                                             @Value("${peaktrack.datasource.max-lag:2s}") Duration maxLag) {
+        Binder binder = Binder.get(environment);
+        List<ReplicaProperties> configured = binder.bind("peaktrack.datasource.replicas",
+                Bindable.listOf(ReplicaProperties.class)).get();
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < configured.size(); i++) {
+            ReplicaProperties properties = configured.get(i);
+            String name = properties.name() != null ? properties.name() : "replica-" + (i + 1);
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(properties.url())
+                    .username(properties.username())
+                    .password(properties.password())
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName(name);
+            pool.setReadOnly(true);
+            replicas.add(new ReplicaRoutingDataSource.Replica(name, pool));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag,
+                SingletonSupplier.of(dataVersionService::getObject),
+                ReplicaRoutingDataSource::currentUserIdFromSecurityContext, meterRegistry);
+    }
+}
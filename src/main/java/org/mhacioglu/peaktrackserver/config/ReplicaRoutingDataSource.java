@@ -0,0 +1,213 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhacioglu.peaktrackserver.model.AuthenticatedUser;
+import org.mhacioglu.peaktrackserver.service.DataVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections for read-only transactions, from a replica when one is close enough
+ * to the primary and from the primary otherwise. Replicas take turns; one is used only while
+ * its last measured lag is within {@code maxLag}, measured from a heartbeat row the primary
+ * rewrites on every check.
+ *
+ * <p>Reads on behalf of a user go to the primary for a short window after a write of theirs
+ * committed on this node. After that, a replica is used for them only once it has the data
+ * version this node knows for them, so a read never sees older data than the version it
+ * is cached under.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+    private static final String WRITE_HEARTBEAT = "UPDATE replica_heartbeat SET beat_millis = ? WHERE id = 1";
+    private static final String READ_HEARTBEAT = "SELECT beat_millis FROM replica_heartbeat WHERE id = 1";
+    private static final String READ_DATA_VERSION = "SELECT data_version FROM registered_user WHERE id = ?";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final Supplier<DataVersionService> dataVersionService;
+    private final Supplier<Long> currentUserId;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * A replica pool and its lag at the last check, or {@code null} if it couldn't be measured.
+     */
+    public static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile Duration lag;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    /**
+     * @param dataVersionService resolved on first use, since it reads through this data source
+     * @param currentUserId      the user the current thread reads for, or {@code null}
+     */
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    List<Replica> replicas,
+                                    Duration maxLag,
+                                    Supplier<DataVersionService> dataVersionService,
+                                    Supplier<Long> currentUserId,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLag = maxLag;
+        this.dataVersionService = dataVersionService;
+        this.currentUserId = currentUserId;
+        this.meterRegistry = meterRegistry;
+        for (Replica replica : this.replicas) {
+            Gauge.builder("peaktrack.datasource.replica.lag", replica,
+                            r -> r.lag == null ? Double.NaN : r.lag.toMillis() / 1000.0)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * The id of the user authenticated on this thread, taken from the JWT principal.
+     */
+    public static Long currentUserIdFromSecurityContext() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.id()
+                : null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Long userId = currentUserId.get();
+        if (userId != null && dataVersionService.get().wroteRecently(userId)) {
+            return fromPrimary("read-your-writes");
+        }
+        Long knownVersion = userId == null ? null : dataVersionService.get().knownVersion(userId);
+
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            Duration lag = replica.lag;
+            if (lag == null || lag.compareTo(maxLag) > 0) {
+                continue;
+            }
+            Connection connection = null;
+            try {
+                connection = replica.dataSource.getConnection();
+                if (knownVersion != null && !hasVersion(connection, userId, knownVersion)) {
+                    connection.close();
+                    return fromPrimary("replica-behind");
+                }
+                count(replica.name, "replica");
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} is unavailable; not using it until its next lag check", replica.name, e);
+                replica.lag = null;
+                closeQuietly(connection);
+            }
+        }
+        return fromPrimary("no-replica");
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Rewrites the heartbeat on the primary and measures how far behind it each replica's
+     * copy is. A replica that can't be read is left out until a later check succeeds.
+     */
+    @Scheduled(fixedDelayString = "${peaktrack.datasource.lag-check-interval:1s}")
+    public void measureLag() {
+        long beat = System.currentTimeMillis();
+        try (Connection connection = primary.getConnection();
+             PreparedStatement statement = connection.prepareStatement(WRITE_HEARTBEAT)) {
+            statement.setLong(1, beat);
+            statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            log.warn("Could not write the replica heartbeat", e);
+            return;
+        }
+
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(READ_HEARTBEAT);
+                 ResultSet result = statement.executeQuery()) {
+                replica.lag = result.next() ? Duration.ofMillis(Math.max(0, beat - result.getLong(1))) : null;
+            } catch (SQLException e) {
+                log.warn("Could not measure the lag of replica {}", replica.name, e);
+                replica.lag = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the replica pools; the primary belongs to whoever passed it in.
+     */
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static boolean hasVersion(Connection connection, Long userId, long version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(READ_DATA_VERSION)) {
+            statement.setLong(1, userId);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getLong(1) >= version;
+            }
+        }
+    }
+
+    private Connection fromPrimary(String reason) throws SQLException {
+        count(PRIMARY, reason);
+        return primary.getConnection();
+    }
+
+    private void count(String target, String reason) {
+        Counter.builder("peaktrack.datasource.reads")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Could not close a replica connection", e);
+        }
+    }
+}
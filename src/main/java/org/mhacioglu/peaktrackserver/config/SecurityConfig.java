@@ -1,7 +1,9 @@
 package org.mhacioglu.peaktrackserver.config;
 
+import org.mhacioglu.peaktrackserver.controller.WorkoutController;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -53,7 +55,8 @@ public class SecurityConfig {
 
         configuration.setAllowedOrigins(List.of("http://localhost:8005"));
         configuration.setAllowedMethods(List.of("GET","POST"));
-        configuration.setAllowedHeaders(List.of("Authorization","Content-Type"));
+        configuration.setAllowedHeaders(List.of("Authorization","Content-Type", HttpHeaders.IF_NONE_MATCH));
+        configuration.setExposedHeaders(List.of(WorkoutController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
 
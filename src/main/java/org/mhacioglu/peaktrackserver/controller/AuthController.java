@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.mhacioglu.peaktrackserver.dto.LoginResponse;
 import org.mhacioglu.peaktrackserver.dto.LoginUserDto;
 import org.mhacioglu.peaktrackserver.dto.RegisterUserDto;
+import org.mhacioglu.peaktrackserver.dto.UserView;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
 import org.mhacioglu.peaktrackserver.service.AuthenticationService;
 import org.mhacioglu.peaktrackserver.service.JwtService;
@@ -23,9 +24,9 @@ public class AuthController {
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<RegisteredUser> register(@RequestBody RegisterUserDto registerUserDto) {
+    public ResponseEntity<UserView> register(@RequestBody RegisterUserDto registerUserDto) {
         RegisteredUser registeredUser = authService.signUp(registerUserDto);
-        return ResponseEntity.ok(registeredUser);
+        return ResponseEntity.ok(UserView.of(registeredUser));
     }
 
     @PostMapping("/login")
@@ -48,5 +49,12 @@ public class AuthController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/logout-all")
+    public ResponseEntity<Void> logoutEverywhere(@RequestHeader("Authorization") String token) {
+        token = token.substring(7);
+        jwtService.revokeAllTokens(token);
+        return ResponseEntity.ok().build();
+    }
+
 
 }
@@ -8,40 +8,93 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
-import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.config.CurrentUser;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.ReportPeriod;
+import org.mhacioglu.peaktrackserver.dto.ResponseFormat;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchResult;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChanges;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExportRow;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutImportSummary;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPage;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPeriodTotals;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.AuthenticatedUser;
 import org.mhacioglu.peaktrackserver.model.Workout;
 import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
-import org.mhacioglu.peaktrackserver.service.UserService;
+import org.mhacioglu.peaktrackserver.service.IdempotencyService;
+import org.mhacioglu.peaktrackserver.service.WorkoutEventRelay;
+import org.mhacioglu.peaktrackserver.service.WorkoutExportService;
+import org.mhacioglu.peaktrackserver.service.WorkoutImportService;
+import org.mhacioglu.peaktrackserver.service.WorkoutResponseCache;
+import org.mhacioglu.peaktrackserver.service.WorkoutRollupService;
 import org.mhacioglu.peaktrackserver.service.WorkoutService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping(value = "/api/workout")
 public class WorkoutController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
 
     private final WorkoutService workoutService;
-    private final UserService userService;
+    private final WorkoutExportService workoutExportService;
+    private final WorkoutImportService workoutImportService;
+    private final WorkoutRollupService workoutRollupService;
+    private final WorkoutResponseCache workoutResponseCache;
+    private final WorkoutEventRelay workoutEventRelay;
+    private final IdempotencyService idempotencyService;
 
-    public WorkoutController(UserService userService,
-                             WorkoutService workoutService) {
+    public WorkoutController(WorkoutService workoutService,
+                             WorkoutExportService workoutExportService,
+                             WorkoutImportService workoutImportService,
+                             WorkoutRollupService workoutRollupService,
+                             WorkoutResponseCache workoutResponseCache,
+                             WorkoutEventRelay workoutEventRelay,
+                             IdempotencyService idempotencyService) {
         this.workoutService = workoutService;
-        this.userService = userService;
-
+        this.workoutExportService = workoutExportService;
+        this.workoutImportService = workoutImportService;
+        this.workoutRollupService = workoutRollupService;
+        this.workoutResponseCache = workoutResponseCache;
+        this.workoutEventRelay = workoutEventRelay;
+        this.idempotencyService = idempotencyService;
     }
 
     @Operation(
             summary = "Get workouts within a date range",
             description = "Retrieves all workouts for the current user, optionally filtered by start and end dates. " +
                     "If dates are provided, workouts are filtered to those starting between the given dates. " +
-                    "Results are sorted by start date in descending order (newest first)."
+                    "Results are sorted by start date in descending order (newest first). " +
+                    "When a limit is given, at most that many workouts are returned and the cursor of the " +
+                    "next page, if any, is sent in the " + NEXT_CURSOR_HEADER + " header; pass it back as 'after'. " +
+                    "Unpaged responses carry an ETag; sending it back in If-None-Match gets 304 Not Modified " +
+                    "while the workouts are unchanged. 'fields' narrows each workout to the listed fields; " +
+                    "exercises are only read when listed. Send Accept: application/cbor or " +
+                    "application/x-jackson-smile for a binary encoding of the same response."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -49,9 +102,13 @@ public class WorkoutController {
                     description = "Workouts successfully retrieved",
                     content = @Content(
                             mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = Workout.class))
+                            array = @ArraySchema(schema = @Schema(implementation = WorkoutView.class))
                     )
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "Not modified since the response with the ETag given in If-None-Match"
+            ),
             @ApiResponse(
                     responseCode = "400",
                     description = "Invalid date parameters",
@@ -70,7 +127,7 @@ public class WorkoutController {
             )
     })
     @GetMapping(value = "/all")
-    public ResponseEntity<List<Workout>> all(
+    public ResponseEntity<?> all(
             @Parameter(
                     description = "Start date-time to filter workouts (inclusive). Format: yyyy-MM-dd HH:mm",
                     example = "2024-01-09 14:30"
@@ -83,11 +140,49 @@ public class WorkoutController {
                     example = "2024-01-09 16:30"
             )
             @RequestParam(value = "to", required = false)
-            @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to) {
+            @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm") LocalDateTime to,
+
+            @Parameter(description = "Maximum number of workouts to return. Omit to return all of them.",
+                    example = "50")
+            @RequestParam(value = "limit", required = false) Integer limit,
+
+            @Parameter(description = "Cursor from the " + NEXT_CURSOR_HEADER + " header of the previous page")
+            @RequestParam(value = "after", required = false) String after,
+
+            @Parameter(description = "Whether to include each workout's exercises. Leave them out for a " +
+                    "lighter listing.")
+            @RequestParam(value = "includeExercises", defaultValue = "true") boolean includeExercises,
+
+            @Parameter(description = "Comma-separated workout fields to return, out of id, name, start, " +
+                    "durationInMinutes, comment and exercises. The id is always returned. Omit to return all of them.",
+                    example = "id,name,start,durationInMinutes")
+            @RequestParam(value = "fields", required = false) String fields,
+
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+
+        Set<WorkoutField> selected = EnumSet.copyOf(WorkoutField.from(fields));
+        if (!includeExercises) {
+            selected.remove(WorkoutField.EXERCISES);
+        }
 
-        RegisteredUser registeredUser = userService.getCurrentUser();
-        List<Workout> workouts = workoutService.getWorkoutsBetween(from, to, registeredUser);
-        return new ResponseEntity<>(workouts, HttpStatus.OK);
+        if (limit == null && after == null) {
+            ResponseFormat format = ResponseFormat.negotiate(accept);
+            WorkoutResponseCache.CachedResponse response = workoutResponseCache.get(currentUser.id(),
+                    "all:" + from + ":" + to + ":" + selected, format,
+                    () -> new WorkoutResponseCache.Computed(
+                            workoutService.getWorkoutsBetween(from, to, currentUser.id(), selected), null));
+            return cached(response, format);
+        }
+
+        WorkoutPage page = workoutService.getWorkoutPage(from, to, currentUser.id(),
+                limit == null ? WorkoutService.MAX_PAGE_SIZE : limit, after, selected);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.workouts());
     }
 
     @Operation(
@@ -95,7 +190,9 @@ public class WorkoutController {
             description = "Generates a comprehensive report of all past workouts for the currently authenticated user. " +
                     "The report includes summarized information about each completed workout, making it suitable " +
                     "for analysis and review of workout history. Each summary provides key metrics and statistics " +
-                    "about the workout session."
+                    "about the workout session. 'fields' narrows each summary to the listed fields. The response " +
+                    "carries an ETag; sending it back in If-None-Match gets 304 Not Modified while the report " +
+                    "is unchanged."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -108,6 +205,10 @@ public class WorkoutController {
                             )
                     )
             ),
+            @ApiResponse(
+                    responseCode = "304",
+                    description = "Not modified since the response with the ETag given in If-None-Match"
+            ),
             @ApiResponse(
                     responseCode = "403",
                     description = "Not authorized to access workout data",
@@ -126,9 +227,234 @@ public class WorkoutController {
             )
     })
     @GetMapping(value = "/generateReport")
-    public ResponseEntity<List<WorkoutSummary>> report() {
-        RegisteredUser currentRegisteredUser = userService.getCurrentUser();
-        return new ResponseEntity<>(workoutService.listAllPastWorkouts(currentRegisteredUser), HttpStatus.OK);
+    public ResponseEntity<byte[]> report(
+            @Parameter(description = "Comma-separated summary fields to return, out of workoutName, workoutStart " +
+                    "and workoutDuration. Omit to return all of them.",
+                    example = "workoutStart,workoutDuration")
+            @RequestParam(value = "fields", required = false) String fields,
+
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        Set<WorkoutSummaryField> selected = WorkoutSummaryField.from(fields);
+        ResponseFormat format = ResponseFormat.negotiate(accept);
+        WorkoutResponseCache.CachedResponse response = workoutResponseCache.get(currentUser.id(),
+                "report:" + selected, format, () -> {
+            // Taken first, so a workout finishing while the report is built makes it expire rather than go stale.
+            LocalDateTime validUntil = workoutService.pastWorkoutsValidUntil(currentUser.id(), LocalDateTime.now());
+            return new WorkoutResponseCache.Computed(
+                    workoutService.listAllPastWorkouts(currentUser.id(), selected), validUntil);
+        });
+        return cached(response, format);
+    }
+
+    // Spring answers a matching If-None-Match with 304 on its own once the ETag is set.
+    private static ResponseEntity<byte[]> cached(WorkoutResponseCache.CachedResponse response, ResponseFormat format) {
+        return ResponseEntity.ok()
+                .eTag(response.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(format.getMediaType())
+                .body(response.body());
+    }
+
+    @Operation(
+            summary = "Get workout changes after a cursor",
+            description = "Returns the currently authenticated user's workouts created or updated and the ids of " +
+                    "those deleted after the given cursor, each workout once in its current state, and the " +
+                    "cursor to pass as 'since' next time. Without 'since' the lists are empty and the cursor " +
+                    "is the current position: take it before downloading the full list, then follow changes " +
+                    "from there. When 'hasMore' is true, call again with the new cursor right away. Changes " +
+                    "are kept for a limited time; an older cursor gets 410 Gone and the full list has to be " +
+                    "downloaded again."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Changes successfully retrieved",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = WorkoutChanges.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid cursor or limit",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "410",
+                    description = "Changes after the cursor are no longer kept",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/changes")
+    public ResponseEntity<WorkoutChanges> changes(
+            @Parameter(description = "Cursor returned by the previous call. Omit to get the current cursor.")
+            @RequestParam(value = "since", required = false) String since,
+
+            @Parameter(description = "Roughly how many changes to return at most; the changes of one write " +
+                    "are never split.", example = "500")
+            @RequestParam(value = "limit", defaultValue = "" + WorkoutService.MAX_PAGE_SIZE) int limit,
+
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return ResponseEntity.ok(workoutService.getChanges(currentUser.id(), since, limit));
+    }
+
+    @Operation(
+            summary = "Stream workout change events",
+            description = "Opens a Server-Sent Events stream that announces every committed create, update and " +
+                    "delete of the currently authenticated user's workouts as a 'workouts-changed' event. " +
+                    "Each event carries the ids of the workouts the write touched, and its id is the change " +
+                    "cursor right after the write; read the new state from /changes. Events arrive within about " +
+                    "a second of the commit, whichever server handled the write. Comment frames are sent " +
+                    "as heartbeats while nothing happens. A client that falls too far behind is disconnected; " +
+                    "after reconnecting it catches up from /changes with the last event id as 'since'."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Event stream opened",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)
+            )
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return workoutEventRelay.subscribe(currentUser.id());
+    }
+
+    @Operation(
+            summary = "Get workout totals per period",
+            description = "Returns, for each week (starting Monday), month or year in which the currently " +
+                    "authenticated user has workouts, the number of sessions, the total minutes and the minutes " +
+                    "of workouts containing exercises of each category. A workout counts towards the day it " +
+                    "starts on. Periods are sorted oldest first; periods without workouts are left out."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Totals successfully retrieved",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = WorkoutPeriodTotals.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported period or invalid date parameters",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/report/{period}")
+    public ResponseEntity<List<WorkoutPeriodTotals>> periodReport(
+            @Parameter(description = "weekly, monthly or yearly", example = "weekly")
+            @PathVariable String period,
+
+            @Parameter(description = "First day to include. Format: yyyy-MM-dd", example = "2024-01-01")
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+
+            @Parameter(description = "Last day to include. Format: yyyy-MM-dd", example = "2024-12-31")
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        ReportPeriod reportPeriod = ReportPeriod.from(period);
+        return ResponseEntity.ok(workoutRollupService.report(currentUser.id(), reportPeriod, from, to));
+    }
+
+    @Operation(
+            summary = "Export workout history",
+            description = "Streams every workout of the currently authenticated user, oldest first, as " +
+                    "newline-delimited JSON (format=ndjson, the default) or CSV (format=csv). " +
+                    "Each record carries the ids of the workout's exercises. The response is written " +
+                    "while the history is read, so it is suitable for histories of any length."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Export started",
+                    content = {
+                            @Content(mediaType = "application/x-ndjson",
+                                    schema = @Schema(implementation = WorkoutExportRow.class)),
+                            @Content(mediaType = "text/csv")
+                    }
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported format",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many exports are running on this server",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "Export format: ndjson or csv")
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        ExportFormat exportFormat = ExportFormat.from(format);
+        StreamingResponseBody body = workoutExportService.openExport(currentUser.id(), exportFormat);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("workouts." + exportFormat.getFileExtension())
+                        .build().toString())
+                .body(body);
+    }
+
+    @Operation(
+            summary = "Import workouts",
+            description = "Creates workouts for the currently authenticated user from a file in the export format, " +
+                    "newline-delimited JSON (format=ndjson, the default) or CSV with a header row (format=csv). " +
+                    "Ids in the file are ignored. Rows that are invalid, refer to unknown exercises or overlap " +
+                    "another workout are skipped and listed in the response. Rows are stored in chunks, so if " +
+                    "the request fails part way the chunks before the failure remain imported."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Import finished",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = WorkoutImportSummary.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Unsupported format",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @PostMapping(value = "/import")
+    public ResponseEntity<WorkoutImportSummary> importWorkouts(
+            @Parameter(description = "Import format: ndjson or csv")
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser,
+            InputStream body) {
+        ExportFormat importFormat = ExportFormat.from(format);
+        return ResponseEntity.ok(workoutImportService.importWorkouts(currentUser.id(), importFormat, body));
     }
 
 
@@ -147,7 +473,7 @@ public class WorkoutController {
                     content = @Content(
                             mediaType = "application/json",
                             schema = @Schema(
-                                    implementation = Workout.class,
+                                    implementation = WorkoutView.class,
                                     description = "The newly created workout with generated ID and user information"
                             )
                     )
@@ -175,10 +501,63 @@ public class WorkoutController {
             )
     })
     @PostMapping(path = "/create", consumes = "application/json")
-    public ResponseEntity<Workout> create(@RequestBody Workout workout) {
-        RegisteredUser currentRegisteredUser = userService.getCurrentUser();
-        Workout newWorkout = workoutService.addWorkout(workout, currentRegisteredUser);
-        return new ResponseEntity<>(newWorkout, HttpStatus.CREATED);
+    public ResponseEntity<?> create(@RequestBody Workout workout,
+                                    @Parameter(description = "Makes retries safe: a request repeated with the same key gets the " +
+                                            "first response back without being run again.")
+                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                    @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return idempotent(currentUser, idempotencyKey, "create", workout, () -> {
+            Workout newWorkout = workoutService.addWorkout(workout, currentUser.id());
+            return new ResponseEntity<>(WorkoutView.of(newWorkout), HttpStatus.CREATED);
+        });
+    }
+
+
+    @Operation(
+            summary = "Apply a batch of workout changes",
+            description = "Applies an ordered list of create, update and delete operations for the " +
+                    "authenticated user in a single transaction. Either every operation is applied or none is. " +
+                    "Time conflicts are checked against the final state of the batch, so a batch may for " +
+                    "example move one workout out of the way and create another in its old slot. " +
+                    "At most " + WorkoutService.MAX_BATCH_SIZE + " operations are accepted.",
+            security = @SecurityRequirement(name = "Bearer Authentication")
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "All operations applied; one result per operation, in request order",
+                    content = @Content(
+                            mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = WorkoutBatchResult.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "An operation is invalid or conflicts in time; nothing was applied. " +
+                            "The index of the operation is returned as 'operationIndex'.",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "An operation refers to a workout not found under user's workouts; " +
+                            "nothing was applied",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @PostMapping(path = "/batch", consumes = "application/json")
+    public ResponseEntity<?> batch(@RequestBody List<WorkoutBatchOperation> operations,
+                                   @Parameter(description = "Makes retries safe: a request repeated with the same key gets the " +
+                                           "first response back without being run again.")
+                                   @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                   @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return idempotent(currentUser, idempotencyKey, "batch", operations,
+                () -> new ResponseEntity<>(workoutService.applyBatch(operations, currentUser.id()), HttpStatus.OK));
     }
 
 
@@ -211,10 +590,15 @@ public class WorkoutController {
             ),
     })
     @DeleteMapping("/delete/{workoutId}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable("workoutId") Long workoutId) {
-        RegisteredUser currentRegisteredUser = userService.getCurrentUser();
-        workoutService.deleteWorkout(workoutId, currentRegisteredUser);
+    public ResponseEntity<?> delete(@PathVariable("workoutId") Long workoutId,
+                                    @Parameter(description = "Makes retries safe: a request repeated with the same key gets the " +
+                                            "first response back without being run again.")
+                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                    @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return idempotent(currentUser, idempotencyKey, "delete", workoutId, () -> {
+            workoutService.deleteWorkout(workoutId, currentUser.id());
+            return ResponseEntity.noContent().build();
+        });
     }
 
 
@@ -230,7 +614,7 @@ public class WorkoutController {
                     description = "Workout successfully updated",
                     content = @Content(
                             mediaType = "application/json",
-                            schema = @Schema(implementation = Workout.class)
+                            schema = @Schema(implementation = WorkoutView.class)
                     )
             ),
             @ApiResponse(
@@ -260,9 +644,30 @@ public class WorkoutController {
             )
     })
     @PutMapping(value = "/update", consumes = "application/json")
-    public ResponseEntity<Workout> update(@RequestBody Workout workout) {
-        RegisteredUser currentRegisteredUser = userService.getCurrentUser();
-        return new ResponseEntity<>(workoutService.updateWorkout(workout, currentRegisteredUser), HttpStatus.OK);
+    public ResponseEntity<?> update(@RequestBody Workout workout,
+                                    @Parameter(description = "Makes retries safe: a request repeated with the same key gets the " +
+                                            "first response back without being run again.")
+                                    @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                    @Parameter(hidden = true) @CurrentUser AuthenticatedUser currentUser) {
+        return idempotent(currentUser, idempotencyKey, "update", workout, () ->
+                new ResponseEntity<>(WorkoutView.of(workoutService.updateWorkout(workout, currentUser.id())), HttpStatus.OK));
+    }
+
+    // Without a key the write simply runs. With one, the stored response is sent as JSON,
+    // whether it was just produced or is being replayed.
+    private ResponseEntity<?> idempotent(AuthenticatedUser currentUser, String idempotencyKey, String operation,
+                                         Object request, Supplier<ResponseEntity<?>> write) {
+        if (idempotencyKey == null) {
+            return write.get();
+        }
+        IdempotencyService.StoredResponse response = idempotencyService.execute(currentUser.id(), idempotencyKey,
+                operation, request, write);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status())
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(response.replayed()));
+        if (response.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(response.body());
     }
 
 
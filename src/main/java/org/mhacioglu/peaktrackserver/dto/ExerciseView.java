@@ -0,0 +1,22 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.model.Exercise;
+
+/**
+ * An exercise as it is sent to clients.
+ */
+public record ExerciseView(Long id,
+                           String name,
+                           String description,
+                           Exercise.Category category,
+                           Exercise.MuscleGroup muscleGroup,
+                           int sets,
+                           int repetitions,
+                           int weight) {
+
+    public static ExerciseView of(Exercise exercise) {
+        return new ExerciseView(exercise.getId(), exercise.getName(), exercise.getDescription(),
+                exercise.getCategory(), exercise.getMuscleGroup(), exercise.getSets(),
+                exercise.getRepetitions(), exercise.getWeight());
+    }
+}
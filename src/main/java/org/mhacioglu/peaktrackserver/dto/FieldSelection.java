@@ -0,0 +1,29 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Parses the comma-separated {@code fields} parameter of the read endpoints.
+ */
+final class FieldSelection {
+
+    private FieldSelection() {
+    }
+
+    static <E extends Enum<E>> Set<E> parse(String fields, Class<E> type, Function<E, String> property) {
+        Set<E> selected = EnumSet.noneOf(type);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            selected.add(Arrays.stream(type.getEnumConstants())
+                    .filter(field -> property.apply(field).equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new InvalidWorkoutDataException("Unknown field: '" + trimmed + "'")));
+        }
+        return selected;
+    }
+}
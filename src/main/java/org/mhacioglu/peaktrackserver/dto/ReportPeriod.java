@@ -0,0 +1,33 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+public enum ReportPeriod {
+    WEEKLY,
+    MONTHLY,
+    YEARLY;
+
+    /**
+     * First day of the period containing the given day. Weeks start on Monday.
+     */
+    public LocalDate startOf(LocalDate day) {
+        return switch (this) {
+            case WEEKLY -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> day.withDayOfMonth(1);
+            case YEARLY -> day.withDayOfYear(1);
+        };
+    }
+
+    public static ReportPeriod from(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidWorkoutDataException("Unsupported period: " + value + ". Use weekly, monthly or yearly.");
+        }
+    }
+}
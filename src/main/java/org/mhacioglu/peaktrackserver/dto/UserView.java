@@ -0,0 +1,26 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+
+/**
+ * A user's profile as it is sent to clients, without the password hash or any of the
+ * bookkeeping columns.
+ */
+public record UserView(Long id,
+                       String username,
+                       String name,
+                       String lastName,
+                       String email,
+                       String phone,
+                       int age,
+                       RegisteredUser.Gender gender,
+                       int height,
+                       int weight,
+                       String additionalNotes) {
+
+    public static UserView of(RegisteredUser user) {
+        return new UserView(user.getId(), user.getUsername(), user.getName(), user.getLastName(),
+                user.getEmail(), user.getPhone(), user.getAge(), user.getGender(), user.getHeight(),
+                user.getWeight(), user.getAdditionalNotes());
+    }
+}
@@ -0,0 +1,25 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.mhacioglu.peaktrackserver.model.Workout;
+
+/**
+ * One operation of a workout batch. {@code CREATE} takes a new workout, {@code UPDATE} a
+ * partial workout carrying its id (as for {@code /update}), {@code DELETE} only a workout id.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkoutBatchOperation {
+    private Type type;
+    private Workout workout;
+    private Long workoutId;
+
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+}
@@ -0,0 +1,21 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one operation of a workout batch, in the order the operations were sent.
+ * {@code workout} holds the workout as stored and is {@code null} for deletions.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkoutBatchResult {
+    private int index;
+    private WorkoutBatchOperation.Type type;
+    private Long workoutId;
+    private WorkoutView workout;
+}
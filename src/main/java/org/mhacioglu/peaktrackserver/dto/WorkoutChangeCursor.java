@@ -0,0 +1,34 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The data version up to which a client has seen a user's changes. Clients receive it as
+ * an opaque string and pass it back as {@code since} to read what changed afterwards.
+ */
+public record WorkoutChangeCursor(long version) {
+
+    public String encode() {
+        String raw = "v" + version;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static WorkoutChangeCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith("v")) {
+                throw new IllegalArgumentException("Missing prefix");
+            }
+            long version = Long.parseLong(raw.substring(1));
+            if (version < 0) {
+                throw new IllegalArgumentException("Negative version");
+            }
+            return new WorkoutChangeCursor(version);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidWorkoutDataException("Invalid change cursor: " + cursor);
+        }
+    }
+}
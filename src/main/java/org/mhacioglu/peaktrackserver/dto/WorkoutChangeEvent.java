@@ -0,0 +1,14 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.List;
+
+/**
+ * Pushed to a user's event streams after a workout write commits. It names the workouts
+ * the write touched; clients read their new state from the changes feed.
+ *
+ * @param cursor   change cursor right after the write, also sent as the event id
+ * @param upserted ids of the workouts the write created or updated
+ * @param deleted  ids of the workouts the write deleted
+ */
+public record WorkoutChangeEvent(String cursor, List<Long> upserted, List<Long> deleted) {
+}
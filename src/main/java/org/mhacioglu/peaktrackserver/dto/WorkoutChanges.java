@@ -0,0 +1,16 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.List;
+
+/**
+ * What changed in a user's workouts after a cursor. Each workout appears at most once,
+ * in the state it has now.
+ *
+ * @param upserts workouts created or updated since the cursor
+ * @param deleted ids of workouts deleted since the cursor; may include workouts that were
+ *                created and deleted again in between
+ * @param cursor  cursor to pass as {@code since} on the next call
+ * @param hasMore whether more changes follow that did not fit into this response
+ */
+public record WorkoutChanges(List<WorkoutView> upserts, List<Long> deleted, String cursor, boolean hasMore) {
+}
@@ -0,0 +1,16 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.model.Exercise;
+
+/**
+ * One exercise of one workout, as read by a projection query over the join table.
+ */
+public record WorkoutExerciseView(Long workoutId, ExerciseView exercise) {
+
+    // Constructor expressions can't nest, so the query passes the exercise's columns flat.
+    public WorkoutExerciseView(Long workoutId, Long id, String name, String description,
+                               Exercise.Category category, Exercise.MuscleGroup muscleGroup,
+                               int sets, int repetitions, int weight) {
+        this(workoutId, new ExerciseView(id, name, description, category, muscleGroup, sets, repetitions, weight));
+    }
+}
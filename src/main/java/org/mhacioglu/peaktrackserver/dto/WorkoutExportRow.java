@@ -0,0 +1,19 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One workout as written by the export and read by the import: one line of NDJSON or
+ * one CSV record. The id is informational; imported workouts always get new ids.
+ */
+@JsonPropertyOrder({"id", "name", "start", "durationInMinutes", "comment", "exerciseIds"})
+public record WorkoutExportRow(Long id,
+                               String name,
+                               LocalDateTime start,
+                               int durationInMinutes,
+                               String comment,
+                               List<Long> exerciseIds) {
+}
@@ -0,0 +1,37 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Fields of a {@link WorkoutView} that a read can be narrowed to. The id is always sent.
+ */
+public enum WorkoutField {
+    ID("id"),
+    NAME("name"),
+    START("start"),
+    DURATION_IN_MINUTES("durationInMinutes"),
+    COMMENT("comment"),
+    EXERCISES("exercises");
+
+    public static final Set<WorkoutField> ALL = Collections.unmodifiableSet(EnumSet.allOf(WorkoutField.class));
+
+    private final String property;
+
+    WorkoutField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    /**
+     * The fields named in a comma-separated list of JSON property names, or all of them
+     * if the list is {@code null}.
+     */
+    public static Set<WorkoutField> from(String fields) {
+        return fields == null ? ALL : FieldSelection.parse(fields, WorkoutField.class, WorkoutField::property);
+    }
+}
@@ -0,0 +1,20 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of an import.
+ *
+ * @param accepted   number of rows stored as new workouts
+ * @param rejected   number of rows that were not stored
+ * @param rejections why rows were rejected; only the first few are listed when there are many
+ */
+public record WorkoutImportSummary(int accepted, int rejected, List<Rejection> rejections) {
+
+    /**
+     * @param row    1-based position of the record in the file, not counting a CSV header
+     * @param reason what was wrong with it
+     */
+    public record Rejection(long row, String reason) {
+    }
+}
@@ -0,0 +1,9 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * The time span of a stored workout, without the rest of the entity.
+ */
+public record WorkoutInterval(LocalDateTime start, LocalDateTime end) {
+}
@@ -0,0 +1,12 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.List;
+
+/**
+ * One page of workouts.
+ *
+ * @param workouts   the workouts of the page, newest first
+ * @param nextCursor cursor of the following page, or {@code null} if this is the last one
+ */
+public record WorkoutPage(List<WorkoutView> workouts, String nextCursor) {
+}
@@ -0,0 +1,21 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import org.mhacioglu.peaktrackserver.model.Exercise;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Totals of a user's workouts over one week, month or year. Periods without workouts are
+ * left out of reports.
+ *
+ * @param periodStart       first day of the period
+ * @param sessions          number of workouts
+ * @param totalMinutes      their combined duration
+ * @param minutesByCategory minutes of workouts containing an exercise of each category
+ */
+public record WorkoutPeriodTotals(LocalDate periodStart,
+                                  int sessions,
+                                  int totalMinutes,
+                                  Map<Exercise.Category, Integer> minutesByCategory) {
+}
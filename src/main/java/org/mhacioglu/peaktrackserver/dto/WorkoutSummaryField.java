@@ -0,0 +1,37 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Fields of a {@link org.mhacioglu.peaktrackserver.model.WorkoutSummary} that the report
+ * can be narrowed to.
+ */
+public enum WorkoutSummaryField {
+    WORKOUT_NAME("workoutName"),
+    WORKOUT_START("workoutStart"),
+    WORKOUT_DURATION("workoutDuration");
+
+    public static final Set<WorkoutSummaryField> ALL =
+            Collections.unmodifiableSet(EnumSet.allOf(WorkoutSummaryField.class));
+
+    private final String property;
+
+    WorkoutSummaryField(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    /**
+     * The fields named in a comma-separated list of JSON property names, or all of them
+     * if the list is {@code null}.
+     */
+    public static Set<WorkoutSummaryField> from(String fields) {
+        return fields == null ? ALL
+                : FieldSelection.parse(fields, WorkoutSummaryField.class, WorkoutSummaryField::property);
+    }
+}
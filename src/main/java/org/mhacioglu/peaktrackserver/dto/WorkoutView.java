@@ -0,0 +1,37 @@
+package org.mhacioglu.peaktrackserver.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.mhacioglu.peaktrackserver.model.Workout;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A workout as it is sent to clients. Reads fill it straight from a projection query, so
+ * no entity is loaded for it. Fields a read didn't ask for are {@code null} and left out
+ * of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WorkoutView(Long id,
+                          String name,
+                          LocalDateTime start,
+                          Integer durationInMinutes,
+                          String comment,
+                          List<ExerciseView> exercises) {
+
+    // Exercises are read by a second query and attached afterwards.
+    public WorkoutView(Long id, String name, LocalDateTime start, Integer durationInMinutes, String comment) {
+        this(id, name, start, durationInMinutes, comment, null);
+    }
+
+    public WorkoutView withExercises(List<ExerciseView> exercises) {
+        return new WorkoutView(id, name, start, durationInMinutes, comment, exercises);
+    }
+
+    public static WorkoutView of(Workout workout) {
+        return new WorkoutView(workout.getId(), workout.getName(), workout.getStart(),
+                workout.getDurationInMinutes(), workout.getComment(),
+                workout.getExercises() == null ? List.of()
+                        : workout.getExercises().stream().map(ExerciseView::of).toList());
+    }
+}
@@ -0,0 +1,7 @@
+package org.mhacioglu.peaktrackserver.exceptions;
+
+public class ChangeCursorExpiredException extends WorkoutException {
+    public ChangeCursorExpiredException() {
+        super("Changes after this cursor are no longer kept; download the full list and start over");
+    }
+}
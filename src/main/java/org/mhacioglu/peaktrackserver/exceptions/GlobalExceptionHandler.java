@@ -40,9 +40,21 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(WorkoutException.class)
     public ProblemDetail handleWorkoutException(WorkoutException ex) {
+        if (ex instanceof WorkoutBatchException batchException) {
+            ProblemDetail detail = handleWorkoutException(batchException.getFailure());
+            detail.setDetail(ex.getMessage());
+            detail.setProperty("operationIndex", batchException.getOperationIndex());
+            return detail;
+        }
         if (ex instanceof WorkoutNotFoundException) {
             return ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(404), ex.getMessage());
         }
+        if (ex instanceof ChangeCursorExpiredException) {
+            return ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(410), ex.getMessage());
+        }
+        if (ex instanceof IdempotencyKeyReusedException) {
+            return ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(422), ex.getMessage());
+        }
         else {
             return ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(400), ex.getMessage());
         }
@@ -57,6 +69,11 @@ public class GlobalExceptionHandler {
 
     }
 
+    @ExceptionHandler(TooManyExportsException.class)
+    public ProblemDetail handleTooManyExports(TooManyExportsException exception) {
+        return ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(429), exception.getMessage());
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ProblemDetail handleConstraintViolation(ConstraintViolationException exception) {
         ProblemDetail errorDetail = ProblemDetail.forStatusAndDetail(HttpStatusCode.valueOf(400),
@@ -0,0 +1,7 @@
+package org.mhacioglu.peaktrackserver.exceptions;
+
+public class IdempotencyKeyReusedException extends WorkoutException {
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency key '" + key + "' was already used for a different request");
+    }
+}
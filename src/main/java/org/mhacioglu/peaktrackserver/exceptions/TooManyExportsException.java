@@ -0,0 +1,7 @@
+package org.mhacioglu.peaktrackserver.exceptions;
+
+public class TooManyExportsException extends RuntimeException {
+    public TooManyExportsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package org.mhacioglu.peaktrackserver.exceptions;
+
+/**
+ * Failure of one operation of a workout batch. The whole batch is rolled back.
+ */
+public class WorkoutBatchException extends WorkoutException {
+    private final int operationIndex;
+    private final WorkoutException failure;
+
+    public WorkoutBatchException(int operationIndex, WorkoutException failure) {
+        super(String.format("Operation %d: %s", operationIndex, failure.getMessage()), failure);
+        this.operationIndex = operationIndex;
+        this.failure = failure;
+    }
+
+    public int getOperationIndex() {
+        return operationIndex;
+    }
+
+    public WorkoutException getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,59 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A workout moved out of {@link Workout}'s table by the archive job, with the id and
+ * exercises it had there. Rows are copied in and out with SQL and only ever read through
+ * this entity.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(name = "workout_archive")
+public class ArchivedWorkout {
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private RegisteredUser user;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime start;
+
+    private int durationInMinutes;
+
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
+    private String comment;
+
+    @ManyToMany
+    @JoinTable(
+            name = "workout_archive_exercises",
+            joinColumns = @JoinColumn(name = "workout_id"),
+            inverseJoinColumns = @JoinColumn(name = "exercise_id")
+    )
+    private List<Exercise> exercises;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,26 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The principal of a request authenticated with a JWT. It is built from the token's
+ * claims, so authenticating a request does not need to load the user's row.
+ *
+ * @param id         primary key of the {@link RegisteredUser}
+ * @param username   the user's login name
+ * @param tokenEpoch the revocation epoch the token was issued under
+ */
+public record AuthenticatedUser(Long id, String username, long tokenEpoch)
+        implements AuthenticatedPrincipal, Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
@@ -1,5 +1,6 @@
 package org.mhacioglu.peaktrackserver.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import lombok.AllArgsConstructor;
@@ -13,9 +14,17 @@ import java.time.Instant;
 @Data
 @Entity
 public class BlacklistedToken {
+    // SHA-256 hex digest of the revoked JWT; the raw token can be longer than the column.
     @Id
-    private String token;
+    @Column(name = "token")
+    private String tokenDigest;
     private Instant expiryDate;
 
+    // When the token was revoked; other nodes poll for rows newer than their last look.
+    @Column(nullable = false)
+    private Instant revokedAt;
 
+    public BlacklistedToken(String tokenDigest, Instant expiryDate) {
+        this(tokenDigest, expiryDate, Instant.now());
+    }
 }
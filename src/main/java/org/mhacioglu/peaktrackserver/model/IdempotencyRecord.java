@@ -0,0 +1,51 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Lob;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * The response a workout write sent with an Idempotency-Key produced, together with a
+ * fingerprint of the request, so that a retry of the same request gets the same response.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(IdempotencyRecord.Key.class)
+public class IdempotencyRecord {
+    @Id
+    private Long userId;
+
+    @Id
+    private String idempotencyKey;
+
+    private String fingerprint;
+
+    private int status;
+
+    // Null when the response has no body.
+    @Lob
+    private byte[] body;
+
+    private LocalDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Long userId;
+        private String idempotencyKey;
+    }
+}
@@ -0,0 +1,24 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * A named lease on a maintenance job. Whichever node holds an unexpired lease is the
+ * only one allowed to run the job.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity
+public class MaintenanceLease {
+    @Id
+    private String name;
+    private String owner;
+    private Instant leaseUntil;
+}
@@ -9,6 +9,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -24,7 +25,8 @@ public class RegisteredUser implements Serializable, UserDetails {
     private final static long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "registered_user_seq")
+    @SequenceGenerator(name = "registered_user_seq", sequenceName = "registered_user_seq", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -66,6 +68,20 @@ public class RegisteredUser implements Serializable, UserDetails {
 
     private String additionalNotes;
 
+    // Bumped to revoke every token issued to this user; tokens carry it as the "epoch" claim.
+    @JsonIgnore
+    @Column(nullable = false)
+    private long tokenEpoch;
+
+    // Bumped by every change to this user's workouts; cached responses are only reused while it is unchanged.
+    @JsonIgnore
+    @Column(nullable = false)
+    private long dataVersion;
+
+    // Every archived workout of this user ended before this; null while none has been archived.
+    @JsonIgnore
+    private LocalDateTime archivedUntil;
+
     @JsonIgnore
     @OneToMany(mappedBy = "user",
             cascade = CascadeType.ALL,
@@ -0,0 +1,21 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import java.time.Instant;
+
+/**
+ * A JWT whose signature has already been checked. Holding on to this value lets
+ * callers read the claims they need without parsing the token again.
+ *
+ * @param digest    SHA-256 hex digest of the raw token, used as a cache and revocation key
+ * @param userId    the {@code uid} claim, or {@code null} for tokens issued before it existed
+ * @param username  the {@code sub} claim
+ * @param issuedAt  the {@code iat} claim
+ * @param expiresAt the {@code exp} claim
+ * @param epoch     the user's revocation epoch at the time the token was issued
+ */
+public record VerifiedToken(String digest, Long userId, String username, Instant issuedAt, Instant expiresAt, long epoch) {
+
+    public boolean isExpired() {
+        return !expiresAt.isAfter(Instant.now());
+    }
+}
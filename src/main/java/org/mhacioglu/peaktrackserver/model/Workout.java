@@ -1,5 +1,6 @@
 package org.mhacioglu.peaktrackserver.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -23,8 +24,10 @@ public class Workout implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    // Ids are reserved 50 at a time so that inserts don't need a round trip each and can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "workout_seq")
+    @SequenceGenerator(name = "workout_seq", sequenceName = "workout_seq", allocationSize = 50)
     private Long id;
 
 
@@ -38,6 +41,11 @@ public class Workout implements Serializable {
     @Min(10)
     private int  durationInMinutes;
 
+    // Derived from start and duration on every write; stored so overlaps can be found by index.
+    @JsonIgnore
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime endTime;
+
     @ManyToMany
     @JoinTable(
             name = "workout_exercises",
@@ -55,4 +63,12 @@ public class Workout implements Serializable {
 
     private String comment;
 
+    @PrePersist
+    @PreUpdate
+    void computeEndTime() {
+        if (start != null) {
+            endTime = start.plusMinutes(durationInMinutes);
+        }
+    }
+
 }
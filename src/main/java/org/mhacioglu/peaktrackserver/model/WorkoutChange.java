@@ -0,0 +1,44 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One entry of a user's change log: a workout that a write at the given data version
+ * created or updated, or deleted. Rows are only ever inserted, and removed again by
+ * compaction once they are old.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+public class WorkoutChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "workout_change_seq")
+    @SequenceGenerator(name = "workout_change_seq", sequenceName = "workout_change_seq", allocationSize = 50)
+    private Long id;
+
+    private Long userId;
+
+    private long version;
+
+    private Long workoutId;
+
+    private boolean deleted;
+
+    private LocalDateTime changedAt;
+
+    public WorkoutChange(Long userId, long version, Long workoutId, boolean deleted, LocalDateTime changedAt) {
+        this.userId = userId;
+        this.version = version;
+        this.workoutId = workoutId;
+        this.deleted = deleted;
+        this.changedAt = changedAt;
+    }
+}
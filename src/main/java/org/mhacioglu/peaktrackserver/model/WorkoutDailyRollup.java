@@ -0,0 +1,70 @@
+package org.mhacioglu.peaktrackserver.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Totals of one user's workouts that start on one day. A workout's minutes count towards
+ * every category among its exercises, so the category minutes may add up to more than
+ * the total.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@IdClass(WorkoutDailyRollup.Key.class)
+public class WorkoutDailyRollup {
+    @Id
+    private Long userId;
+
+    @Id
+    private LocalDate workoutDate;
+
+    private int sessions;
+    private int totalMinutes;
+    private int cardioMinutes;
+    private int strengthMinutes;
+    private int flexMinutes;
+    private int balanceMinutes;
+
+    public WorkoutDailyRollup(Long userId, LocalDate workoutDate) {
+        this.userId = userId;
+        this.workoutDate = workoutDate;
+    }
+
+    public int getMinutes(Exercise.Category category) {
+        return switch (category) {
+            case CARDIO -> cardioMinutes;
+            case STRENGTH -> strengthMinutes;
+            case FLEX -> flexMinutes;
+            case BALANCE -> balanceMinutes;
+        };
+    }
+
+    public void addMinutes(Exercise.Category category, int minutes) {
+        switch (category) {
+            case CARDIO -> cardioMinutes += minutes;
+            case STRENGTH -> strengthMinutes += minutes;
+            case FLEX -> flexMinutes += minutes;
+            case BALANCE -> balanceMinutes += minutes;
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Long userId;
+        private LocalDate workoutDate;
+    }
+}
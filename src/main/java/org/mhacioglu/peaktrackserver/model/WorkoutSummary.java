@@ -1,15 +1,20 @@
 package org.mhacioglu.peaktrackserver.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
 
+// Fields the report wasn't narrowed to are null and left out of the JSON.
 @Data
 @Builder
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class WorkoutSummary {
     private String workoutName;
     private LocalDateTime workoutStart;
-    private int workoutDuration;
+    private Integer workoutDuration;
 
 }
@@ -0,0 +1,122 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.mhacioglu.peaktrackserver.dto.WorkoutCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutInterval;
+import org.mhacioglu.peaktrackserver.model.ArchivedWorkout;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reads over archived workouts, matching those {@link WorkoutRepository} runs over live ones,
+ * and the statements that move workouts between the two tables. A move copies the workouts
+ * and their exercise links and then deletes them from where they were, so it must run in a
+ * transaction that holds the user's write lock.
+ */
+public interface ArchivedWorkoutRepository extends JpaRepository<ArchivedWorkout, Long>, ArchivedWorkoutViewRepository {
+
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView(" +
+            "w.id, e.id, e.name, e.description, e.category, e.muscleGroup, e.sets, e.repetitions, e.weight) " +
+            "FROM ArchivedWorkout w JOIN w.exercises e " +
+            "WHERE w.user.id = :userId " +
+            "AND (:from IS NULL OR w.start > :from) " +
+            "AND (:to IS NULL OR w.start < :to)")
+    List<WorkoutExerciseView> findExerciseViewsBetween(Long userId, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutCursor(w.start, w.id) FROM ArchivedWorkout w " +
+            "WHERE w.user.id = :userId " +
+            "AND (:from IS NULL OR w.start > :from) " +
+            "AND (:to IS NULL OR w.start < :to) " +
+            "AND (:afterStart IS NULL OR w.start < :afterStart " +
+            "     OR (w.start = :afterStart AND w.id < :afterId)) " +
+            "ORDER BY w.start DESC, w.id DESC")
+    List<WorkoutCursor> findPageKeys(Long userId, LocalDateTime from, LocalDateTime to,
+                                     LocalDateTime afterStart, Long afterId, Limit limit);
+
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView(" +
+            "w.id, e.id, e.name, e.description, e.category, e.muscleGroup, e.sets, e.repetitions, e.weight) " +
+            "FROM ArchivedWorkout w JOIN w.exercises e WHERE w.id IN :workoutIds")
+    List<WorkoutExerciseView> findExerciseViewsByWorkoutIdIn(Collection<Long> workoutIds);
+
+    /**
+     * Archived workouts of the user whose time span touches [{@code start}, {@code end}], in start order.
+     */
+    @Query("SELECT w FROM ArchivedWorkout w " +
+            "WHERE w.user.id = :userId AND w.start <= :end AND w.endTime >= :start " +
+            "ORDER BY w.start")
+    List<ArchivedWorkout> findOverlapping(Long userId, LocalDateTime start, LocalDateTime end, Limit limit);
+
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutInterval(w.start, w.endTime) FROM ArchivedWorkout w " +
+            "WHERE w.user.id = :userId AND w.start <= :to AND w.endTime >= :from " +
+            "ORDER BY w.start")
+    List<WorkoutInterval> findIntervals(Long userId, LocalDateTime from, LocalDateTime to);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT w FROM ArchivedWorkout w WHERE w.user.id = :userId " +
+            "AND (:afterStart IS NULL OR w.start > :afterStart " +
+            "     OR (w.start = :afterStart AND w.id > :afterId)) " +
+            "ORDER BY w.start, w.id")
+    List<ArchivedWorkout> findExportPage(Long userId, LocalDateTime afterStart, Long afterId, Limit limit);
+
+    @Query("SELECT w.id, e.id FROM ArchivedWorkout w JOIN w.exercises e WHERE w.id IN ?1")
+    List<Object[]> findExerciseIdsByWorkoutIdIn(Collection<Long> workoutIds);
+
+    @Query("SELECT w.id FROM ArchivedWorkout w WHERE w.user.id = ?1 AND w.id IN ?2")
+    List<Long> findIdsByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    /**
+     * Ids of the user's live workouts that ended before the cutoff, oldest first. Served by
+     * the (user_id, start, end_time) index, since such a workout also started before it.
+     */
+    @Query("SELECT w.id FROM Workout w WHERE w.user.id = ?1 AND w.start < ?2 AND w.endTime < ?2 ORDER BY w.start")
+    List<Long> findArchivableIds(Long userId, LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO workout_archive " +
+            "(id, user_id, name, start, duration_in_minutes, end_time, comment, archived_at) " +
+            "SELECT id, user_id, name, start, duration_in_minutes, end_time, comment, :archivedAt " +
+            "FROM workout WHERE id IN (:ids)", nativeQuery = true)
+    int copyToArchive(Collection<Long> ids, LocalDateTime archivedAt);
+
+    @Modifying
+    @Query(value = "INSERT INTO workout_archive_exercises (workout_id, exercise_id) " +
+            "SELECT workout_id, exercise_id FROM workout_exercises WHERE workout_id IN (:ids)", nativeQuery = true)
+    int copyExercisesToArchive(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM workout_exercises WHERE workout_id IN (:ids)", nativeQuery = true)
+    int deleteLiveExercises(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM workout WHERE id IN (:ids)", nativeQuery = true)
+    int deleteLive(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO workout (id, user_id, name, start, duration_in_minutes, end_time, comment) " +
+            "SELECT id, user_id, name, start, duration_in_minutes, end_time, comment " +
+            "FROM workout_archive WHERE user_id = :userId AND id IN (:ids)", nativeQuery = true)
+    int copyToLive(Long userId, Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO workout_exercises (workout_id, exercise_id) " +
+            "SELECT workout_id, exercise_id FROM workout_archive_exercises WHERE workout_id IN (:ids)",
+            nativeQuery = true)
+    int copyExercisesToLive(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM workout_archive_exercises WHERE workout_id IN (:ids)", nativeQuery = true)
+    int deleteArchivedExercises(Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM workout_archive WHERE id IN (:ids)", nativeQuery = true)
+    int deleteArchived(Collection<Long> ids);
+}
@@ -0,0 +1,7 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+/**
+ * The projection reads of {@link WorkoutViewRepository}, over archived workouts.
+ */
+public interface ArchivedWorkoutViewRepository extends WorkoutViewRepository {
+}
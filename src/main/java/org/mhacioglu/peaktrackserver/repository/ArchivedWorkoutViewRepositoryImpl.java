@@ -0,0 +1,15 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import jakarta.persistence.EntityManager;
+
+class ArchivedWorkoutViewRepositoryImpl extends WorkoutViewRepositoryImpl implements ArchivedWorkoutViewRepository {
+
+    ArchivedWorkoutViewRepositoryImpl(EntityManager entityManager) {
+        super(entityManager);
+    }
+
+    @Override
+    String entityName() {
+        return "ArchivedWorkout";
+    }
+}
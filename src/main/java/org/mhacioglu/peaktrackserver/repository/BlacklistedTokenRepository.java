@@ -2,12 +2,20 @@ package org.mhacioglu.peaktrackserver.repository;
 
 import org.mhacioglu.peaktrackserver.model.BlacklistedToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
 
 public interface BlacklistedTokenRepository extends JpaRepository<BlacklistedToken, String> {
-    @Query("SELECT b FROM BlacklistedToken b WHERE b.expiryDate < ?1")
-    List<BlacklistedToken> findExpiredTokens(Instant now);
+    List<BlacklistedToken> findByExpiryDateAfter(Instant now);
+
+    List<BlacklistedToken> findByRevokedAtAfterAndExpiryDateAfter(Instant since, Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM blacklisted_token WHERE expiry_date < ?1 LIMIT ?2", nativeQuery = true)
+    int deleteExpiredBatch(Instant now, int limit);
 }
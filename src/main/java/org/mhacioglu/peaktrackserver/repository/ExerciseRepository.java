@@ -0,0 +1,17 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ExerciseRepository extends JpaRepository<Exercise, Long> {
+
+    /**
+     * (exercise id, category) pairs of the given exercises.
+     */
+    @Query("SELECT e.id, e.category FROM Exercise e WHERE e.id IN ?1")
+    List<Object[]> findCategoriesByIdIn(Collection<Long> ids);
+}
@@ -0,0 +1,17 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, IdempotencyRecord.Key> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_record WHERE expires_at < ?1 LIMIT ?2", nativeQuery = true)
+    int deleteExpiredBatch(LocalDateTime now, int limit);
+}
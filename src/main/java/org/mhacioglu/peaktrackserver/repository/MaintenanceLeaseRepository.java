@@ -0,0 +1,40 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.model.MaintenanceLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+public interface MaintenanceLeaseRepository extends JpaRepository<MaintenanceLease, String> {
+
+    /**
+     * Inserts the job's lease row, failing on a duplicate key if another node created it first.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO maintenance_lease (name, lease_until) VALUES (?1, ?2)", nativeQuery = true)
+    int create(String name, Instant leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MaintenanceLease l SET l.owner = ?2, l.leaseUntil = ?4 " +
+            "WHERE l.name = ?1 AND (l.leaseUntil < ?3 OR l.owner = ?2)")
+    int tryAcquire(String name, String owner, Instant now, Instant leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE MaintenanceLease l SET l.leaseUntil = ?3 WHERE l.name = ?1 AND l.owner = ?2")
+    int extend(String name, String owner, Instant leaseUntil);
+
+    /**
+     * Ends the owner's lease and clears its ownership, so a late {@link #extend} from the
+     * finished run can't take the lease back.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE MaintenanceLease l SET l.owner = NULL, l.leaseUntil = ?3 WHERE l.name = ?1 AND l.owner = ?2")
+    int release(String name, String owner, Instant now);
+}
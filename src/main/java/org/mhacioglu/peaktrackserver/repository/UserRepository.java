@@ -1,10 +1,50 @@
 package org.mhacioglu.peaktrackserver.repository;
 
+import jakarta.persistence.LockModeType;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends CrudRepository<RegisteredUser, Long> {
+public interface UserRepository extends JpaRepository<RegisteredUser, Long> {
     Optional<RegisteredUser> findByUsername(String username);
+
+    /**
+     * Loads the user and holds a write lock on its row until the transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM RegisteredUser u WHERE u.id = ?1")
+    Optional<RegisteredUser> findByIdForUpdate(Long id);
+
+    @Query("SELECT u.id FROM RegisteredUser u WHERE u.username = ?1")
+    Optional<Long> findIdByUsername(String username);
+
+    @Query("SELECT u.tokenEpoch FROM RegisteredUser u WHERE u.username = ?1")
+    Optional<Long> findTokenEpochByUsername(String username);
+
+    @Query("SELECT u.dataVersion FROM RegisteredUser u WHERE u.id = ?1")
+    Optional<Long> findDataVersionById(Long id);
+
+    @Query("SELECT u.id, u.dataVersion FROM RegisteredUser u WHERE u.id IN ?1")
+    List<Object[]> findDataVersionsByIdIn(Collection<Long> ids);
+
+    @Query("SELECT u.archivedUntil FROM RegisteredUser u WHERE u.id = ?1")
+    Optional<LocalDateTime> findArchivedUntilById(Long id);
+
+    /**
+     * Ids of the users after the given one, in id order.
+     */
+    @Query("SELECT u.id FROM RegisteredUser u WHERE u.id > ?1 ORDER BY u.id")
+    List<Long> findIdsAfter(Long afterId, Limit limit);
+
+    @Modifying
+    @Query("UPDATE RegisteredUser u SET u.tokenEpoch = u.tokenEpoch + 1 WHERE u.username = ?1")
+    int incrementTokenEpoch(String username);
 }
@@ -0,0 +1,28 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.model.WorkoutChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WorkoutChangeRepository extends JpaRepository<WorkoutChange, Long> {
+
+    /**
+     * The user's changes at versions after {@code since}, oldest first.
+     */
+    @Query("SELECT c FROM WorkoutChange c WHERE c.userId = :userId AND c.version > :since ORDER BY c.version, c.id")
+    List<WorkoutChange> findAfter(Long userId, long since, Limit limit);
+
+    @Query("SELECT c FROM WorkoutChange c WHERE c.userId = :userId AND c.version = :version ORDER BY c.id")
+    List<WorkoutChange> findAllAtVersion(Long userId, long version);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM workout_change WHERE changed_at < ?1 LIMIT ?2", nativeQuery = true)
+    int deleteOlderThanBatch(LocalDateTime cutoff, int limit);
+}
@@ -0,0 +1,20 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.model.WorkoutDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface WorkoutDailyRollupRepository extends JpaRepository<WorkoutDailyRollup, WorkoutDailyRollup.Key> {
+
+    /**
+     * The user's rollups for days in [from, to], bounds inclusive, oldest first. Either bound may be {@code null}.
+     */
+    @Query("SELECT r FROM WorkoutDailyRollup r WHERE r.userId = :userId " +
+            "AND (:from IS NULL OR r.workoutDate >= :from) " +
+            "AND (:to IS NULL OR r.workoutDate <= :to) " +
+            "ORDER BY r.workoutDate")
+    List<WorkoutDailyRollup> findAllBetween(Long userId, LocalDate from, LocalDate to);
+}
@@ -1,9 +1,103 @@
 package org.mhacioglu.peaktrackserver.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.mhacioglu.peaktrackserver.dto.WorkoutCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutInterval;
 import org.mhacioglu.peaktrackserver.model.Workout;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface WorkoutRepository extends CrudRepository<Workout, Long> {
-}
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface WorkoutRepository extends JpaRepository<Workout, Long>, WorkoutViewRepository {
+    int EXPORT_PAGE_SIZE = 500;
+
+    /**
+     * The exercises of every workout {@link #findViewsBetween} returns for the same arguments.
+     */
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView(" +
+            "w.id, e.id, e.name, e.description, e.category, e.muscleGroup, e.sets, e.repetitions, e.weight) " +
+            "FROM Workout w JOIN w.exercises e " +
+            "WHERE w.user.id = :userId " +
+            "AND (:from IS NULL OR w.start > :from) " +
+            "AND (:to IS NULL OR w.start < :to)")
+    List<WorkoutExerciseView> findExerciseViewsBetween(Long userId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Positions of one keyset page of the user's workouts starting strictly between the
+     * bounds, ordered by (start, id) descending and continuing after the given position.
+     * Any of the bounds and the position may be {@code null}.
+     */
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutCursor(w.start, w.id) FROM Workout w " +
+            "WHERE w.user.id = :userId " +
+            "AND (:from IS NULL OR w.start > :from) " +
+            "AND (:to IS NULL OR w.start < :to) " +
+            "AND (:afterStart IS NULL OR w.start < :afterStart " +
+            "     OR (w.start = :afterStart AND w.id < :afterId)) " +
+            "ORDER BY w.start DESC, w.id DESC")
+    List<WorkoutCursor> findPageKeys(Long userId, LocalDateTime from, LocalDateTime to,
+                                     LocalDateTime afterStart, Long afterId, Limit limit);
+
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView(" +
+            "w.id, e.id, e.name, e.description, e.category, e.muscleGroup, e.sets, e.repetitions, e.weight) " +
+            "FROM Workout w JOIN w.exercises e WHERE w.id IN :workoutIds")
+    List<WorkoutExerciseView> findExerciseViewsByWorkoutIdIn(Collection<Long> workoutIds);
+
+    /**
+     * Workouts of the user, other than {@code excludedId}, whose time span touches
+     * [{@code start}, {@code end}]. Both ends are inclusive.
+     */
+    @Query("SELECT w FROM Workout w JOIN FETCH w.user " +
+            "WHERE w.user.id = :userId " +
+            "AND w.start <= :end AND w.endTime >= :start " +
+            "AND (:excludedId IS NULL OR w.id <> :excludedId) " +
+            "ORDER BY w.start")
+    List<Workout> findOverlapping(Long userId, LocalDateTime start, LocalDateTime end,
+                                  Long excludedId, Limit limit);
 
+    /**
+     * Earliest end of the user's workouts that have not ended before the given time, or {@code null}.
+     */
+    @Query("SELECT MIN(w.endTime) FROM Workout w WHERE w.user.id = ?1 AND w.endTime >= ?2")
+    LocalDateTime findNextEndTime(Long userId, LocalDateTime time);
 
+    /**
+     * Time spans of the user's workouts overlapping [from, to], bounds inclusive, in start order.
+     */
+    @Query("SELECT new org.mhacioglu.peaktrackserver.dto.WorkoutInterval(w.start, w.endTime) FROM Workout w " +
+            "WHERE w.user.id = :userId AND w.start <= :to AND w.endTime >= :from " +
+            "ORDER BY w.start")
+    List<WorkoutInterval> findIntervals(Long userId, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * One keyset page of the user's workouts, ordered by (start, id) ascending and continuing
+     * after the given position, which may be {@code null} for the first page.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT w FROM Workout w WHERE w.user.id = :userId " +
+            "AND (:afterStart IS NULL OR w.start > :afterStart " +
+            "     OR (w.start = :afterStart AND w.id > :afterId)) " +
+            "ORDER BY w.start, w.id")
+    List<Workout> findExportPage(Long userId, LocalDateTime afterStart, Long afterId, Limit limit);
+
+    /**
+     * (workout id, exercise id) pairs of the given workouts.
+     */
+    @Query("SELECT w.id, e.id FROM Workout w JOIN w.exercises e WHERE w.id IN ?1")
+    List<Object[]> findExerciseIdsByWorkoutIdIn(Collection<Long> workoutIds);
+
+    @Query("SELECT DISTINCT w FROM Workout w JOIN FETCH w.user LEFT JOIN FETCH w.exercises " +
+            "WHERE w.user.id = ?1 AND w.id IN ?2")
+    List<Workout> findAllByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    @Query("SELECT DISTINCT w FROM Workout w JOIN FETCH w.user LEFT JOIN FETCH w.exercises " +
+            "WHERE w.id = ?1 AND w.user.id = ?2")
+    Optional<Workout> findByIdAndUserId(Long id, Long userId);
+}
@@ -0,0 +1,34 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Projection reads whose select list depends on the fields the client asked for. Fields
+ * that weren't asked for are neither selected nor set.
+ */
+public interface WorkoutViewRepository {
+
+    /**
+     * Workouts of the user starting strictly between the bounds, newest first, without
+     * their exercises. Either bound may be {@code null}.
+     */
+    List<WorkoutView> findViewsBetween(Long userId, LocalDateTime from, LocalDateTime to, Set<WorkoutField> fields);
+
+    /**
+     * The given workouts, newest first, without their exercises.
+     */
+    List<WorkoutView> findViewsByIdIn(Collection<Long> ids, Set<WorkoutField> fields);
+
+    /**
+     * Summaries of the user's workouts that ended before the given time, newest first.
+     */
+    List<WorkoutSummary> findSummariesEndedBefore(Long userId, LocalDateTime before, Set<WorkoutSummaryField> fields);
+}
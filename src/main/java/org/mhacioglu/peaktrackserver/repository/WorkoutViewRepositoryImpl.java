@@ -0,0 +1,110 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class WorkoutViewRepositoryImpl implements WorkoutViewRepository {
+    // Paths of the fields backed by a column. Workout reads always select the id first.
+    private static final Map<WorkoutField, String> WORKOUT_COLUMNS = Map.of(
+            WorkoutField.NAME, "w.name",
+            WorkoutField.START, "w.start",
+            WorkoutField.DURATION_IN_MINUTES, "w.durationInMinutes",
+            WorkoutField.COMMENT, "w.comment");
+    private static final Map<WorkoutSummaryField, String> SUMMARY_COLUMNS = Map.of(
+            WorkoutSummaryField.WORKOUT_NAME, "w.name",
+            WorkoutSummaryField.WORKOUT_START, "w.start",
+            WorkoutSummaryField.WORKOUT_DURATION, "w.durationInMinutes");
+
+    private final EntityManager entityManager;
+
+    WorkoutViewRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // The entity the reads go to; it must have the fields the select lists name.
+    String entityName() {
+        return "Workout";
+    }
+
+    @Override
+    public List<WorkoutView> findViewsBetween(Long userId, LocalDateTime from, LocalDateTime to,
+                                              Set<WorkoutField> fields) {
+        List<WorkoutField> columns = columns(WORKOUT_COLUMNS, fields, WorkoutField.class);
+        return entityManager.createQuery("SELECT w.id" + select(WORKOUT_COLUMNS, columns, ", ") +
+                        " FROM " + entityName() + " w " +
+                        "WHERE w.user.id = :userId " +
+                        "AND (:from IS NULL OR w.start > :from) " +
+                        "AND (:to IS NULL OR w.start < :to) " +
+                        "ORDER BY w.start DESC, w.id DESC", Tuple.class)
+                .setParameter("userId", userId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultStream()
+                .map(tuple -> toView(tuple, columns))
+                .toList();
+    }
+
+    @Override
+    public List<WorkoutView> findViewsByIdIn(Collection<Long> ids, Set<WorkoutField> fields) {
+        List<WorkoutField> columns = columns(WORKOUT_COLUMNS, fields, WorkoutField.class);
+        return entityManager.createQuery("SELECT w.id" + select(WORKOUT_COLUMNS, columns, ", ") +
+                        " FROM " + entityName() + " w WHERE w.id IN :ids ORDER BY w.start DESC, w.id DESC", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .map(tuple -> toView(tuple, columns))
+                .toList();
+    }
+
+    @Override
+    public List<WorkoutSummary> findSummariesEndedBefore(Long userId, LocalDateTime before,
+                                                         Set<WorkoutSummaryField> fields) {
+        List<WorkoutSummaryField> columns = columns(SUMMARY_COLUMNS, fields, WorkoutSummaryField.class);
+        return entityManager.createQuery("SELECT " + select(SUMMARY_COLUMNS, columns, "") +
+                        " FROM " + entityName() + " w WHERE w.user.id = :userId AND w.endTime < :before " +
+                        "ORDER BY w.start DESC", Tuple.class)
+                .setParameter("userId", userId)
+                .setParameter("before", before)
+                .getResultStream()
+                .map(tuple -> new WorkoutSummary(
+                        value(tuple, columns, WorkoutSummaryField.WORKOUT_NAME, 0, String.class),
+                        value(tuple, columns, WorkoutSummaryField.WORKOUT_START, 0, LocalDateTime.class),
+                        value(tuple, columns, WorkoutSummaryField.WORKOUT_DURATION, 0, Integer.class)))
+                .toList();
+    }
+
+    private static WorkoutView toView(Tuple tuple, List<WorkoutField> columns) {
+        return new WorkoutView(tuple.get(0, Long.class),
+                value(tuple, columns, WorkoutField.NAME, 1, String.class),
+                value(tuple, columns, WorkoutField.START, 1, LocalDateTime.class),
+                value(tuple, columns, WorkoutField.DURATION_IN_MINUTES, 1, Integer.class),
+                value(tuple, columns, WorkoutField.COMMENT, 1, String.class));
+    }
+
+    // The requested fields that map to a column, in a fixed order so the select list is stable.
+    private static <F extends Enum<F>> List<F> columns(Map<F, String> paths, Set<F> fields, Class<F> type) {
+        return Arrays.stream(type.getEnumConstants())
+                .filter(field -> paths.containsKey(field) && fields.contains(field))
+                .toList();
+    }
+
+    private static <F> String select(Map<F, String> paths, List<F> columns, String prefix) {
+        return columns.isEmpty() ? "" : prefix + columns.stream().map(paths::get).collect(Collectors.joining(", "));
+    }
+
+    private static <F, T> T value(Tuple tuple, List<F> columns, F field, int offset, Class<T> type) {
+        int index = columns.indexOf(field);
+        return index < 0 ? null : tuple.get(offset + index, type);
+    }
+}
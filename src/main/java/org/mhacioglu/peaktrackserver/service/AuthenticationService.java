@@ -29,6 +29,9 @@ public class AuthenticationService {
         this.authenticationManager = authenticationManager;
     }
 
+    // Neither method here is transactional: each hashes or checks a password between its
+    // queries, and a transaction would hold its connection all through that. The username's
+    // unique constraint still rejects a second sign-up that races past the check.
     public RegisteredUser signUp(@Valid RegisterUserDto registerUserDto) {
         if (userRepository.findByUsername(registerUserDto.getUsername()).isPresent()) {
             throw new UsernameAlreadyExistsException("Username already exists");
@@ -0,0 +1,86 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Tracks the version of each user's workout data. Every workout write bumps it in the
+ * same transaction, so anything derived from the data at one version can be reused for
+ * as long as the version stays the same. Versions are cached for a short time; this node
+ * sees its own bumps as soon as they commit, other nodes within that window.
+ *
+ * <p>It also remembers for a while which users this node has written for, so reads that
+ * would go to a replica can be sent to the primary until the replica has caught up.
+ */
+@Service
+public class DataVersionService {
+    private final UserRepository userRepository;
+    private final Cache<Long, Long> versions;
+    private final Cache<Long, Boolean> recentWriters;
+
+    public DataVersionService(UserRepository userRepository,
+                              @Value("${peaktrack.data-version-cache.size:10000}") long cacheSize,
+                              @Value("${peaktrack.data-version-cache.ttl:30s}") Duration cacheTtl,
+                              @Value("${peaktrack.datasource.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+    }
+
+    public long currentVersion(Long userId) {
+        return versions.get(userId, key -> userRepository.findDataVersionById(key)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found")));
+    }
+
+    /**
+     * The user's version if this node has it cached, without querying for it.
+     *
+     * @return the cached version, or {@code null} if there is none
+     */
+    public Long knownVersion(Long userId) {
+        return versions.getIfPresent(userId);
+    }
+
+    /**
+     * Whether a write for the user committed on this node within the read-your-writes window.
+     */
+    public boolean wroteRecently(Long userId) {
+        return recentWriters.getIfPresent(userId) != null;
+    }
+
+    /**
+     * Bumps the version of a user whose row the caller has locked for the write.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bump(RegisteredUser lockedUser) {
+        long version = lockedUser.getDataVersion() + 1;
+        lockedUser.setDataVersion(version);
+        Long userId = lockedUser.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Commits of one user's writes are ordered by the row lock, but their
+                // callbacks are not, so never let an older version replace a newer one.
+                versions.asMap().merge(userId, version, Math::max);
+                recentWriters.put(userId, Boolean.TRUE);
+            }
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhacioglu.peaktrackserver.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Purges stored idempotent responses whose time is up. Rows are deleted in fixed-size
+ * batches so that no single statement holds locks on a large part of the table.
+ */
+@Service
+public class IdempotencyCleanupJob {
+    static final String JOB_NAME = "idempotency-record-cleanup";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final MaintenanceLockService maintenanceLockService;
+    private final int batchSize;
+    private final Duration leaseTime;
+    private final Counter purgedRows;
+    private final Timer duration;
+
+    public IdempotencyCleanupJob(IdempotencyRecordRepository idempotencyRecordRepository,
+                                 MaintenanceLockService maintenanceLockService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${peaktrack.maintenance.idempotency-cleanup.batch-size:1000}") int batchSize,
+                                 @Value("${peaktrack.maintenance.idempotency-cleanup.lease:10m}") Duration leaseTime) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.maintenanceLockService = maintenanceLockService;
+        this.batchSize = batchSize;
+        this.leaseTime = leaseTime;
+        this.purgedRows = Counter.builder("peaktrack.maintenance.rows.purged")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+        this.duration = Timer.builder("peaktrack.maintenance.duration")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${peaktrack.maintenance.idempotency-cleanup.cron:0 15 * * * *}")
+    public void purgeExpiredRecords() {
+        maintenanceLockService.runExclusively(JOB_NAME, leaseTime, () -> duration.record(this::purge));
+    }
+
+    private void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted;
+        do {
+            deleted = idempotencyRecordRepository.deleteExpiredBatch(now, batchSize);
+            purgedRows.increment(deleted);
+        } while (deleted == batchSize && maintenanceLockService.extendLease(JOB_NAME, leaseTime));
+    }
+}
@@ -0,0 +1,155 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhacioglu.peaktrackserver.exceptions.IdempotencyKeyReusedException;
+import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+import org.mhacioglu.peaktrackserver.model.IdempotencyRecord;
+import org.mhacioglu.peaktrackserver.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Runs workout writes sent with an Idempotency-Key at most once per user and key. The
+ * response of the first run is stored in the write's own transaction, so either both the
+ * write and its response are kept or neither is; a retry gets the stored response back
+ * without any validation or write being run again. Only successful responses are stored,
+ * so a request that failed may be retried with the same key.
+ *
+ * <p>Responses are kept in a database table for the configured time and, on the node that
+ * stored or last read them, in a size-bounded in-memory cache in front of it. A retry that
+ * misses the cache takes the user's write lock before looking the key up, so it waits for
+ * a first run that is still in progress instead of running the write twice.
+ */
+@Service
+public class IdempotencyService {
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final UserLockService userLockService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Cache<IdempotencyRecord.Key, StoredResponse> responses;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              UserLockService userLockService,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${peaktrack.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${peaktrack.idempotency.cache-max-bytes:16777216}") long cacheMaxBytes) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.userLockService = userLockService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((IdempotencyRecord.Key key, StoredResponse response) ->
+                        response.body() == null ? 0 : response.body().length)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * A response as it was first sent, serialized as JSON.
+     *
+     * @param body     the response body, or {@code null} if there was none
+     * @param replayed whether the response comes from an earlier run
+     */
+    public record StoredResponse(String fingerprint, int status, byte[] body, boolean replayed) {
+        private StoredResponse asReplay() {
+            return new StoredResponse(fingerprint, status, body, true);
+        }
+    }
+
+    /**
+     * Runs the write unless the user already ran one with this key, and returns its response.
+     *
+     * @param operation names the endpoint, so the same key can't replay another endpoint's response
+     * @param request   the request body, or any object that identifies the request
+     * @throws IdempotencyKeyReusedException if the key was used for a different request
+     */
+    public StoredResponse execute(Long userId, String key, String operation, Object request,
+                                  Supplier<ResponseEntity<?>> write) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidWorkoutDataException("An idempotency key must have between 1 and " + MAX_KEY_LENGTH +
+                    " characters");
+        }
+        IdempotencyRecord.Key id = new IdempotencyRecord.Key(userId, key);
+        String fingerprint = fingerprintOf(operation, request);
+        StoredResponse cached = responses.getIfPresent(id);
+        if (cached != null) {
+            return replay(cached, fingerprint, key);
+        }
+
+        return transactionTemplate.execute(status -> {
+            userLockService.lockForWrite(userId, "idempotency");
+            IdempotencyRecord stored = idempotencyRecordRepository.findById(id)
+                    .filter(record -> record.getExpiresAt().isAfter(LocalDateTime.now()))
+                    .orElse(null);
+            if (stored != null) {
+                StoredResponse response = new StoredResponse(stored.getFingerprint(), stored.getStatus(),
+                        stored.getBody(), false);
+                responses.put(id, response);
+                return replay(response, fingerprint, key);
+            }
+
+            ResponseEntity<?> result = write.get();
+            StoredResponse response = new StoredResponse(fingerprint, result.getStatusCode().value(),
+                    result.hasBody() ? toJson(result.getBody()) : null, false);
+            // Replaces an expired record the cleanup job hasn't removed yet.
+            idempotencyRecordRepository.save(new IdempotencyRecord(userId, key, fingerprint, response.status(),
+                    response.body(), LocalDateTime.now().plus(ttl)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    responses.put(id, response);
+                }
+            });
+            return response;
+        });
+    }
+
+    private static StoredResponse replay(StoredResponse response, String fingerprint, String key) {
+        if (!response.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException(key);
+        }
+        return response.asReplay();
+    }
+
+    private String fingerprintOf(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(toJson(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+}
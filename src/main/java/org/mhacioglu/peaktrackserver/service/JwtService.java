@@ -1,60 +1,125 @@
 package org.mhacioglu.peaktrackserver.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import org.mhacioglu.peaktrackserver.model.BlacklistedToken;
-import org.mhacioglu.peaktrackserver.repository.BlacklistedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.VerifiedToken;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.List;
+import java.util.HexFormat;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
+    public static final String EPOCH_CLAIM = "epoch";
+    public static final String USER_ID_CLAIM = "uid";
+
     @Value("${security.jwt.secret-key}")
     private String secretKey;
 
     @Value("${security.jwt.expiration-time}")
     private long jwtExpiration;
 
-    private final BlacklistedTokenRepository blacklistedTokenRepository;
+    @Value("${security.jwt.verified-cache-size:10000}")
+    private long verifiedCacheSize;
 
-    public JwtService(BlacklistedTokenRepository blacklistedTokenRepository) {
-        this.blacklistedTokenRepository = blacklistedTokenRepository;
-    }
+    private final TokenRevocationStore tokenRevocationStore;
+    private final TokenEpochService tokenEpochService;
 
-    public void blacklistToken(String token) {
-        Date expiration = extractExpiration(token);
-        BlacklistedToken blacklistedToken = new BlacklistedToken(token, expiration.toInstant());
-        blacklistedTokenRepository.save(blacklistedToken);
-    }
+    // Built once: the key and parser are immutable and safe to share between request threads.
+    private Key signInKey;
+    private JwtParser jwtParser;
+    private Cache<String, VerifiedToken> verifiedTokens;
 
-    public boolean isTokenBlacklisted(String token) {
-        return blacklistedTokenRepository.existsById(token);
+    public JwtService(TokenRevocationStore tokenRevocationStore,
+                      TokenEpochService tokenEpochService) {
+        this.tokenRevocationStore = tokenRevocationStore;
+        this.tokenEpochService = tokenEpochService;
     }
 
+    @PostConstruct
+    void init() {
+        this.signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                        return timeUntil(token.expiresAt()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedToken token,
+                                                  long currentTime, long currentDuration) {
+                        return timeUntil(token.expiresAt()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedToken token,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
 
+    public void blacklistToken(String token) {
+        VerifiedToken verifiedToken = verify(token);
+        tokenRevocationStore.revoke(verifiedToken.digest(), verifiedToken.expiresAt());
+    }
 
-
-
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    /**
+     * Revokes every token issued to the owner of the given token, on all devices.
+     */
+    public void revokeAllTokens(String token) {
+        tokenEpochService.revokeAllTokens(verify(token).username());
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * Checks the signature and expiry of the token and returns its claims. Tokens that
+     * were verified recently are served from a bounded cache keyed by the token digest,
+     * so repeated requests with the same token cost a hash lookup instead of an HMAC.
+     * Cached entries are dropped when the token expires.
+     */
+    public VerifiedToken verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        Number epoch = claims.get(EPOCH_CLAIM, Number.class);
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        VerifiedToken verifiedToken = new VerifiedToken(
+                digest,
+                userId == null ? null : userId.longValue(),
+                claims.getSubject(),
+                claims.getIssuedAt() == null ? null : claims.getIssuedAt().toInstant(),
+                claims.getExpiration().toInstant(),
+                epoch == null ? 0 : epoch.longValue()
+        );
+        verifiedTokens.put(digest, verifiedToken);
+        return verifiedToken;
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -62,7 +127,14 @@ public class JwtService {
     }
 
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-        return buildToken(extraClaims, userDetails, jwtExpiration);
+        Map<String, Object> claims = new HashMap<>(extraClaims);
+        if (userDetails instanceof RegisteredUser registeredUser) {
+            claims.putIfAbsent(EPOCH_CLAIM, registeredUser.getTokenEpoch());
+            if (registeredUser.getId() != null) {
+                claims.putIfAbsent(USER_ID_CLAIM, registeredUser.getId());
+            }
+        }
+        return buildToken(claims, userDetails, jwtExpiration);
     }
 
     public long getExpirationTime() {
@@ -80,43 +152,31 @@ public class JwtService {
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()))
-                && !isTokenExpired(token)
-                && !isTokenBlacklisted(token);
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    @Scheduled(cron = "0 0 * * * *") // Run every hour
-    public void cleanupExpiredTokens() {
-        List<BlacklistedToken> expiredTokens =
-                blacklistedTokenRepository.findExpiredTokens(Instant.now());
-        blacklistedTokenRepository.deleteAll(expiredTokens);
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Checks a verified token against expiry, the owner's revocation epoch and the
+     * revocation list, without loading the owner's account.
+     */
+    public boolean isTokenValid(VerifiedToken verifiedToken) {
+        return !verifiedToken.isExpired()
+                && verifiedToken.epoch() >= tokenEpochService.currentEpoch(verifiedToken.username())
+                && !tokenRevocationStore.isRevoked(verifiedToken.digest());
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static Duration timeUntil(Instant instant) {
+        Duration remaining = Duration.between(Instant.now(), instant);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
     }
 }
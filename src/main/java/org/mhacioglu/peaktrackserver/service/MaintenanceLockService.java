@@ -0,0 +1,81 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.mhacioglu.peaktrackserver.repository.MaintenanceLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Cluster-wide mutual exclusion for maintenance jobs, backed by a lease row per job in
+ * {@code maintenance_lease}. A node may run a job only while it holds an unexpired lease;
+ * a node that dies mid-run simply lets its lease lapse. Jobs that run in batches extend
+ * the lease between them, so a run longer than the lease isn't joined by another node.
+ */
+@Service
+public class MaintenanceLockService {
+    private static final Logger log = LoggerFactory.getLogger(MaintenanceLockService.class);
+
+    private final MaintenanceLeaseRepository maintenanceLeaseRepository;
+    private final String owner;
+
+    public MaintenanceLockService(MaintenanceLeaseRepository maintenanceLeaseRepository) {
+        this.maintenanceLeaseRepository = maintenanceLeaseRepository;
+        this.owner = hostName() + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Runs the task if this node can take the lease for the given job.
+     *
+     * @return {@code true} if the task ran, {@code false} if another node holds the lease
+     */
+    public boolean runExclusively(String jobName, Duration leaseTime, Runnable task) {
+        if (!tryAcquire(jobName, leaseTime)) {
+            log.debug("Skipping {}: lease is held by another node", jobName);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            maintenanceLeaseRepository.release(jobName, owner, Instant.now());
+        }
+    }
+
+    /**
+     * Extends the lease this node holds for the job, from within its task.
+     *
+     * @return {@code false} if the lease was lost to another node, in which case the task must stop
+     */
+    public boolean extendLease(String jobName, Duration leaseTime) {
+        return maintenanceLeaseRepository.extend(jobName, owner, Instant.now().plus(leaseTime)) == 1;
+    }
+
+    private boolean tryAcquire(String jobName, Duration leaseTime) {
+        Instant now = Instant.now();
+        if (!maintenanceLeaseRepository.existsById(jobName)) {
+            try {
+                // Created already expired, so every node competes for it below. A plain insert
+                // fails if another node got there first rather than overwriting its lease.
+                maintenanceLeaseRepository.create(jobName, now.minusSeconds(1));
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the row first; fall through and compete for it.
+            }
+        }
+        return maintenanceLeaseRepository.tryAcquire(jobName, owner, now, now.plus(leaseTime)) == 1;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown-host";
+        }
+    }
+}
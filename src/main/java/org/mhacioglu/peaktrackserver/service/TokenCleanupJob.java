@@ -0,0 +1,59 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhacioglu.peaktrackserver.repository.BlacklistedTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Purges blacklist rows whose tokens have expired. Rows are deleted in fixed-size
+ * batches so that no single statement holds locks on a large part of the table.
+ */
+@Service
+public class TokenCleanupJob {
+    static final String JOB_NAME = "blacklisted-token-cleanup";
+
+    private final BlacklistedTokenRepository blacklistedTokenRepository;
+    private final MaintenanceLockService maintenanceLockService;
+    private final int batchSize;
+    private final Duration leaseTime;
+    private final Counter purgedRows;
+    private final Timer duration;
+
+    public TokenCleanupJob(BlacklistedTokenRepository blacklistedTokenRepository,
+                           MaintenanceLockService maintenanceLockService,
+                           MeterRegistry meterRegistry,
+                           @Value("${peaktrack.maintenance.token-cleanup.batch-size:1000}") int batchSize,
+                           @Value("${peaktrack.maintenance.token-cleanup.lease:10m}") Duration leaseTime) {
+        this.blacklistedTokenRepository = blacklistedTokenRepository;
+        this.maintenanceLockService = maintenanceLockService;
+        this.batchSize = batchSize;
+        this.leaseTime = leaseTime;
+        this.purgedRows = Counter.builder("peaktrack.maintenance.rows.purged")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+        this.duration = Timer.builder("peaktrack.maintenance.duration")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${peaktrack.maintenance.token-cleanup.cron:0 0 * * * *}")
+    public void purgeExpiredTokens() {
+        maintenanceLockService.runExclusively(JOB_NAME, leaseTime, () -> duration.record(this::purge));
+    }
+
+    private void purge() {
+        Instant now = Instant.now();
+        int deleted;
+        do {
+            deleted = blacklistedTokenRepository.deleteExpiredBatch(now, batchSize);
+            purgedRows.increment(deleted);
+        } while (deleted == batchSize && maintenanceLockService.extendLease(JOB_NAME, leaseTime));
+    }
+}
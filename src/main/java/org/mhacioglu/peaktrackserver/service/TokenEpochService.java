@@ -0,0 +1,55 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Tracks the revocation epoch of each user. Every token carries the epoch it was issued
+ * under; bumping the epoch invalidates all of a user's outstanding tokens at once.
+ * Epochs are cached for a short time so other nodes pick up a bump within that window.
+ */
+@Service
+public class TokenEpochService {
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final Cache<String, Long> epochs;
+
+    public TokenEpochService(UserRepository userRepository,
+                             UserService userService,
+                             @Value("${security.jwt.epoch-cache.size:10000}") long cacheSize,
+                             @Value("${security.jwt.epoch-cache.ttl:30s}") Duration cacheTtl) {
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    public long currentEpoch(String username) {
+        return epochs.get(username, key -> userRepository.findTokenEpochByUsername(key)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found")));
+    }
+
+    @Transactional
+    public void revokeAllTokens(String username) {
+        userRepository.incrementTokenEpoch(username);
+        // Invalidated only once the bump is visible, or a read in between would cache the old epoch again.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                epochs.invalidate(username);
+                userService.evict(username);
+            }
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import org.mhacioglu.peaktrackserver.model.BlacklistedToken;
+import org.mhacioglu.peaktrackserver.repository.BlacklistedTokenRepository;
+import org.mhacioglu.peaktrackserver.util.BloomFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * In-memory view of revoked tokens, keyed by token digest. The {@code blacklisted_token}
+ * table stays the durable log: every revocation is written through to it, and the store
+ * is rebuilt from it on startup. A bloom filter answers the common "not revoked" case
+ * without touching the set or the database; a bloom hit that is missing from the local
+ * set is a false positive, and is checked against the table.
+ *
+ * <p>A revocation takes effect at once on the node that made it. Other nodes learn of it
+ * by polling the table for recently revoked rows every {@code poll-interval} (5s by
+ * default), so a revoked token can still be accepted elsewhere for up to that long.
+ */
+@Component
+public class TokenRevocationStore {
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Polls look back this much further than their last run, for rows committed late or
+    // stamped by a node whose clock is behind.
+    private static final Duration POLL_OVERLAP = Duration.ofMinutes(1);
+
+    private final BlacklistedTokenRepository blacklistedTokenRepository;
+    private final long expectedRevocations;
+
+    private final Cache<String, Instant> revokedDigests = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, Instant>() {
+                @Override
+                public long expireAfterCreate(String digest, Instant expiresAt, long currentTime) {
+                    return untilExpiry(expiresAt);
+                }
+
+                @Override
+                public long expireAfterUpdate(String digest, Instant expiresAt,
+                                              long currentTime, long currentDuration) {
+                    return untilExpiry(expiresAt);
+                }
+
+                @Override
+                public long expireAfterRead(String digest, Instant expiresAt,
+                                            long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    private volatile BloomFilter bloomFilter;
+    private volatile Instant lastPoll = Instant.EPOCH;
+
+    public TokenRevocationStore(BlacklistedTokenRepository blacklistedTokenRepository,
+                                @Value("${security.jwt.revocation.expected-size:100000}")
+                                long expectedRevocations) {
+        this.blacklistedTokenRepository = blacklistedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.bloomFilter = new BloomFilter(expectedRevocations, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Reloads the live revocations from the table and swaps in a fresh bloom filter,
+     * which also drops bits left behind by revocations that have since expired.
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${security.jwt.revocation.refresh-interval:5m}",
+            fixedDelayString = "${security.jwt.revocation.refresh-interval:5m}")
+    public void rebuild() {
+        Instant now = Instant.now();
+        List<BlacklistedToken> live = blacklistedTokenRepository.findByExpiryDateAfter(now);
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, live.size() * 2L),
+                FALSE_POSITIVE_RATE);
+        live.forEach(blacklistedToken -> {
+            rebuilt.put(blacklistedToken.getTokenDigest());
+            revokedDigests.put(blacklistedToken.getTokenDigest(), blacklistedToken.getExpiryDate());
+        });
+        this.bloomFilter = rebuilt;
+        // A revocation made since the snapshot may have set its bit in the filter just replaced.
+        // It was added to the set first, so it is seen here.
+        revokedDigests.asMap().keySet().forEach(rebuilt::put);
+        if (lastPoll.isBefore(now)) {
+            lastPoll = now;
+        }
+    }
+
+    /**
+     * Adds the revocations made on any node since the last poll, so they take effect here
+     * within one poll interval.
+     */
+    @Scheduled(initialDelayString = "${security.jwt.revocation.poll-interval:5s}",
+            fixedDelayString = "${security.jwt.revocation.poll-interval:5s}")
+    public void pollRevocations() {
+        Instant now = Instant.now();
+        blacklistedTokenRepository.findByRevokedAtAfterAndExpiryDateAfter(lastPoll.minus(POLL_OVERLAP), now)
+                .forEach(blacklistedToken -> {
+                    revokedDigests.put(blacklistedToken.getTokenDigest(), blacklistedToken.getExpiryDate());
+                    bloomFilter.put(blacklistedToken.getTokenDigest());
+                });
+        lastPoll = now;
+    }
+
+    public void revoke(String digest, Instant expiresAt) {
+        blacklistedTokenRepository.save(new BlacklistedToken(digest, expiresAt));
+        revokedDigests.put(digest, expiresAt);
+        bloomFilter.put(digest);
+    }
+
+    public boolean isRevoked(String digest) {
+        if (!bloomFilter.mightContain(digest)) {
+            return false;
+        }
+        if (revokedDigests.getIfPresent(digest) != null) {
+            return true;
+        }
+        return blacklistedTokenRepository.existsById(digest);
+    }
+
+    private static long untilExpiry(Instant expiresAt) {
+        Duration remaining = Duration.between(Instant.now(), expiresAt);
+        return remaining.isNegative() ? 0 : remaining.toNanos();
+    }
+}
@@ -0,0 +1,40 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Serializes writes per user by locking the user's row ({@code SELECT ... FOR UPDATE}) for
+ * the rest of the caller's transaction. Writes of different users lock different rows and
+ * never wait for each other. The time spent waiting for the lock is recorded as
+ * {@code peaktrack.user.lock.wait}, tagged with the operation.
+ */
+@Service
+public class UserLockService {
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    public UserLockService(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public RegisteredUser lockForWrite(Long userId, String operation) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return userRepository.findByIdForUpdate(userId)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        } finally {
+            sample.stop(Timer.builder("peaktrack.user.lock.wait")
+                    .tag("operation", operation)
+                    .register(meterRegistry));
+        }
+    }
+}
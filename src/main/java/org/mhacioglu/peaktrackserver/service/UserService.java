@@ -1,24 +1,53 @@
 package org.mhacioglu.peaktrackserver.service;
 
-import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.mhacioglu.peaktrackserver.repository.UserRepository;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    // Username -> user id, for tokens that predate the "uid" claim. Null when disabled.
+    private final Cache<String, Long> userIds;
+
+    public UserService(UserRepository userRepository,
+                       @Value("${security.user-cache.enabled:true}") boolean cacheEnabled,
+                       @Value("${security.user-cache.size:10000}") long cacheSize,
+                       @Value("${security.user-cache.ttl:10m}") Duration cacheTtl) {
         this.userRepository = userRepository;
+        this.userIds = cacheEnabled
+                ? Caffeine.newBuilder().maximumSize(cacheSize).expireAfterWrite(cacheTtl).build()
+                : null;
+    }
+
+    /**
+     * Resolves the id of the user with the given username, served from a bounded
+     * cache when it is enabled.
+     */
+    public Long findUserId(String username) {
+        if (userIds == null) {
+            return loadUserId(username);
+        }
+        return userIds.get(username, this::loadUserId);
+    }
+
+    /**
+     * Drops any cached data for the user. Must be called whenever a user is updated or deleted.
+     */
+    public void evict(String username) {
+        if (userIds != null) {
+            userIds.invalidate(username);
+        }
     }
 
-    public RegisteredUser getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName(); // Get username from Spring Security's User
-        return userRepository.findByUsername(username)
+    private Long loadUserId(String username) {
+        return userRepository.findIdByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
     }
 }
@@ -0,0 +1,82 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves workouts that ended longer ago than the horizon to the archive tables, so the
+ * live table and its indexes only hold the recent history most reads ask for. Users are
+ * walked in id order and each one's workouts archived in batches, every batch in its own
+ * transaction, so a run that is stopped leaves nothing half moved.
+ */
+@Service
+public class WorkoutArchiveJob {
+    static final String JOB_NAME = "workout-archive";
+
+    private final UserRepository userRepository;
+    private final WorkoutArchiveService workoutArchiveService;
+    private final MaintenanceLockService maintenanceLockService;
+    private final Duration horizon;
+    private final int batchSize;
+    private final Duration leaseTime;
+    private final Counter archivedRows;
+    private final Timer duration;
+
+    public WorkoutArchiveJob(UserRepository userRepository,
+                             WorkoutArchiveService workoutArchiveService,
+                             MaintenanceLockService maintenanceLockService,
+                             MeterRegistry meterRegistry,
+                             @Value("${peaktrack.archive.horizon:180d}") Duration horizon,
+                             @Value("${peaktrack.maintenance.workout-archive.batch-size:500}") int batchSize,
+                             @Value("${peaktrack.maintenance.workout-archive.lease:30m}") Duration leaseTime) {
+        this.userRepository = userRepository;
+        this.workoutArchiveService = workoutArchiveService;
+        this.maintenanceLockService = maintenanceLockService;
+        this.horizon = horizon;
+        this.batchSize = batchSize;
+        this.leaseTime = leaseTime;
+        this.archivedRows = Counter.builder("peaktrack.maintenance.rows.archived")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+        this.duration = Timer.builder("peaktrack.maintenance.duration")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${peaktrack.maintenance.workout-archive.cron:0 0 4 * * *}")
+    public void archiveOldWorkouts() {
+        maintenanceLockService.runExclusively(JOB_NAME, leaseTime, () -> duration.record(this::archive));
+    }
+
+    void archive() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(horizon);
+        Long lastId = 0L;
+        List<Long> userIds;
+        do {
+            userIds = userRepository.findIdsAfter(lastId, Limit.of(batchSize));
+            for (Long userId : userIds) {
+                int archived;
+                do {
+                    archived = workoutArchiveService.archiveBatch(userId, cutoff, batchSize);
+                    archivedRows.increment(archived);
+                    if (archived == batchSize && !maintenanceLockService.extendLease(JOB_NAME, leaseTime)) {
+                        return;
+                    }
+                } while (archived == batchSize);
+            }
+            if (!userIds.isEmpty()) {
+                lastId = userIds.getLast();
+            }
+        } while (userIds.size() == batchSize && maintenanceLockService.extendLease(JOB_NAME, leaseTime));
+    }
+}
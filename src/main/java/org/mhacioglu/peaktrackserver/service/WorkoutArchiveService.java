@@ -0,0 +1,104 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Moves workouts between the live table and the archive. Workouts that ended before a
+ * cutoff are archived a batch at a time, each batch in its own transaction under the
+ * user's write lock, so a run that stops halfway leaves every workout in exactly one
+ * table and the next run simply carries on. A workout is moved back when a write targets
+ * it, so writes only ever change live workouts.
+ *
+ * <p>Archiving doesn't change what a user's workouts are, so it neither bumps the data
+ * version nor logs changes. The user's {@code archivedUntil} is raised to the cutoff
+ * before anything is moved, so reads can tell from it alone whether a range may reach
+ * into the archive.
+ */
+@Service
+public class WorkoutArchiveService {
+    private final ArchivedWorkoutRepository archivedWorkoutRepository;
+    private final UserRepository userRepository;
+    private final UserLockService userLockService;
+
+    public WorkoutArchiveService(ArchivedWorkoutRepository archivedWorkoutRepository,
+                                 UserRepository userRepository,
+                                 UserLockService userLockService) {
+        this.archivedWorkoutRepository = archivedWorkoutRepository;
+        this.userRepository = userRepository;
+        this.userLockService = userLockService;
+    }
+
+    /**
+     * The time every archived workout of the user ended before, or {@code null} if none was ever archived.
+     */
+    public LocalDateTime archivedUntil(Long userId) {
+        return userRepository.findArchivedUntilById(userId).orElse(null);
+    }
+
+    /**
+     * Whether workouts starting after {@code from} may include archived ones.
+     *
+     * @param from exclusive lower bound on the start, or {@code null} for none
+     */
+    public static boolean reaches(LocalDateTime archivedUntil, LocalDateTime from) {
+        return archivedUntil != null && (from == null || from.isBefore(archivedUntil));
+    }
+
+    /**
+     * Archives up to {@code limit} of the user's workouts that ended before the cutoff.
+     *
+     * @return how many were archived; fewer than {@code limit} means none is left
+     */
+    @Transactional
+    public int archiveBatch(Long userId, LocalDateTime cutoff, int limit) {
+        // Checked without the lock first, so users with nothing to archive are never locked.
+        if (archivedWorkoutRepository.findArchivableIds(userId, cutoff, Limit.of(1)).isEmpty()) {
+            return 0;
+        }
+        RegisteredUser user = userLockService.lockForWrite(userId, "archive");
+        List<Long> ids = archivedWorkoutRepository.findArchivableIds(userId, cutoff, Limit.of(limit));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        if (user.getArchivedUntil() == null || user.getArchivedUntil().isBefore(cutoff)) {
+            user.setArchivedUntil(cutoff);
+        }
+        archivedWorkoutRepository.copyToArchive(ids, LocalDateTime.now());
+        archivedWorkoutRepository.copyExercisesToArchive(ids);
+        archivedWorkoutRepository.deleteLiveExercises(ids);
+        archivedWorkoutRepository.deleteLive(ids);
+        return ids.size();
+    }
+
+    /**
+     * Moves any of the given workouts that are archived for the locked user back to the
+     * live table, so they can be loaded and written like any other.
+     *
+     * @return how many were moved back
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int restore(RegisteredUser lockedUser, Collection<Long> ids) {
+        if (lockedUser.getArchivedUntil() == null || ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> archived = archivedWorkoutRepository.findIdsByUserIdAndIdIn(lockedUser.getId(), ids);
+        if (archived.isEmpty()) {
+            return 0;
+        }
+        archivedWorkoutRepository.copyToLive(lockedUser.getId(), archived);
+        archivedWorkoutRepository.copyExercisesToLive(archived);
+        archivedWorkoutRepository.deleteArchivedExercises(archived);
+        archivedWorkoutRepository.deleteArchived(archived);
+        return archived.size();
+    }
+}
@@ -0,0 +1,62 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.mhacioglu.peaktrackserver.repository.WorkoutChangeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Drops change log rows older than the retention. Clients whose cursor points before the
+ * dropped rows are told to download the full list again, see {@link WorkoutChangeLog}.
+ */
+@Service
+public class WorkoutChangeCompactionJob {
+    static final String JOB_NAME = "workout-change-compaction";
+
+    private final WorkoutChangeRepository workoutChangeRepository;
+    private final MaintenanceLockService maintenanceLockService;
+    private final Duration retention;
+    private final int batchSize;
+    private final Duration leaseTime;
+    private final Counter purgedRows;
+    private final Timer duration;
+
+    public WorkoutChangeCompactionJob(WorkoutChangeRepository workoutChangeRepository,
+                                      MaintenanceLockService maintenanceLockService,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${peaktrack.change-log.retention:30d}") Duration retention,
+                                      @Value("${peaktrack.maintenance.change-compaction.batch-size:1000}") int batchSize,
+                                      @Value("${peaktrack.maintenance.change-compaction.lease:10m}") Duration leaseTime) {
+        this.workoutChangeRepository = workoutChangeRepository;
+        this.maintenanceLockService = maintenanceLockService;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.leaseTime = leaseTime;
+        this.purgedRows = Counter.builder("peaktrack.maintenance.rows.purged")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+        this.duration = Timer.builder("peaktrack.maintenance.duration")
+                .tag("job", JOB_NAME)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${peaktrack.maintenance.change-compaction.cron:0 30 3 * * *}")
+    public void compact() {
+        maintenanceLockService.runExclusively(JOB_NAME, leaseTime, () -> duration.record(this::purge));
+    }
+
+    private void purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        int deleted;
+        do {
+            deleted = workoutChangeRepository.deleteOlderThanBatch(cutoff, batchSize);
+            purgedRows.increment(deleted);
+        } while (deleted == batchSize && maintenanceLockService.extendLease(JOB_NAME, leaseTime));
+    }
+}
@@ -0,0 +1,113 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.mhacioglu.peaktrackserver.exceptions.ChangeCursorExpiredException;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.WorkoutChange;
+import org.mhacioglu.peaktrackserver.repository.WorkoutChangeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads the per-user log of workout changes. Each write records its changes at
+ * the data version it bumped the user to, while holding the user's row lock, so a user's
+ * versions are committed in order and every version from the first logged one on has
+ * entries. That makes a gap after a cursor detectable: it means compaction removed
+ * changes the client hasn't seen.
+ */
+@Service
+public class WorkoutChangeLog {
+    private final WorkoutChangeRepository workoutChangeRepository;
+    private final DataVersionService dataVersionService;
+    private final Duration retention;
+
+    public WorkoutChangeLog(WorkoutChangeRepository workoutChangeRepository,
+                            DataVersionService dataVersionService,
+                            @Value("${peaktrack.change-log.retention:30d}") Duration retention) {
+        this.workoutChangeRepository = workoutChangeRepository;
+        this.dataVersionService = dataVersionService;
+        this.retention = retention;
+    }
+
+    /**
+     * Changes after a version, each workout once with the last thing that happened to it.
+     *
+     * @param version the version the changes bring the client to
+     * @param hasMore whether changes after {@code version} were left out
+     */
+    public record Changes(List<Long> upserted, List<Long> deleted, long version, boolean hasMore) {
+    }
+
+    /**
+     * Logs the workouts a write created or updated and the ones it deleted, at the version
+     * the write bumped the locked user to. A workout in both collections counts as deleted.
+     * The {@link WorkoutEventRelay} announces the entries on the user's event streams.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(RegisteredUser lockedUser, Collection<Long> upserted, Collection<Long> deleted) {
+        Long userId = lockedUser.getId();
+        long version = lockedUser.getDataVersion();
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> upsertedOnly = upserted.stream().filter(workoutId -> !deleted.contains(workoutId)).toList();
+        List<WorkoutChange> changes = new ArrayList<>(upsertedOnly.size() + deleted.size());
+        for (Long workoutId : upsertedOnly) {
+            changes.add(new WorkoutChange(userId, version, workoutId, false, now));
+        }
+        for (Long workoutId : deleted) {
+            changes.add(new WorkoutChange(userId, version, workoutId, true, now));
+        }
+        workoutChangeRepository.saveAll(changes);
+    }
+
+    /**
+     * Reads the changes after {@code since}, about {@code limit} of them. Versions are never
+     * split, so a single write with more changes than the limit is returned whole.
+     *
+     * @throws ChangeCursorExpiredException if changes after {@code since} were compacted away
+     */
+    @Transactional(readOnly = true)
+    public Changes readAfter(Long userId, long since, int limit) {
+        List<WorkoutChange> entries = workoutChangeRepository.findAfter(userId, since, Limit.of(limit + 1));
+        if (entries.isEmpty()) {
+            if (dataVersionService.currentVersion(userId) > since) {
+                throw new ChangeCursorExpiredException();
+            }
+            return new Changes(List.of(), List.of(), since, false);
+        }
+        WorkoutChange first = entries.getFirst();
+        // Compaction deletes in batches, so rows it is about to reach may already be partly gone.
+        if (first.getVersion() != since + 1 || first.getChangedAt().isBefore(LocalDateTime.now().minus(retention))) {
+            throw new ChangeCursorExpiredException();
+        }
+
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) {
+            long cutVersion = entries.get(limit).getVersion();
+            if (first.getVersion() == cutVersion) {
+                entries = workoutChangeRepository.findAllAtVersion(userId, cutVersion);
+            } else {
+                entries = entries.stream().filter(entry -> entry.getVersion() < cutVersion).toList();
+            }
+        }
+
+        Map<Long, Boolean> deletedById = new LinkedHashMap<>();
+        for (WorkoutChange entry : entries) {
+            deletedById.remove(entry.getWorkoutId());
+            deletedById.put(entry.getWorkoutId(), entry.isDeleted());
+        }
+        List<Long> upserted = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        deletedById.forEach((workoutId, isDeleted) -> (isDeleted ? deleted : upserted).add(workoutId));
+        return new Changes(upserted, deleted, entries.getLast().getVersion(), hasMore);
+    }
+}
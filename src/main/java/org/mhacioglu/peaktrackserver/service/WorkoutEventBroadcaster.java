@@ -0,0 +1,174 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes workout change events to the open event streams of their user on this node; the
+ * {@link WorkoutEventRelay} publishes them from the change log. Each stream has a
+ * bounded buffer drained by its own virtual thread, which sends a heartbeat whenever the
+ * stream has been quiet for a while. Publishing never waits: a stream whose buffer is full
+ * is closed, so one slow client can't hold up writes or the other streams. Clients that
+ * reconnect catch up from the changes feed, using the last event id as the cursor.
+ */
+@Service
+public class WorkoutEventBroadcaster {
+    static final String EVENT_NAME = "workouts-changed";
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final int bufferSize;
+    private final Duration heartbeatInterval;
+    private final Duration timeout;
+    private final Counter droppedConnections;
+
+    public WorkoutEventBroadcaster(MeterRegistry meterRegistry,
+                                   @Value("${peaktrack.events.buffer-size:64}") int bufferSize,
+                                   @Value("${peaktrack.events.heartbeat-interval:15s}") Duration heartbeatInterval,
+                                   @Value("${peaktrack.events.timeout:30m}") Duration timeout) {
+        this.bufferSize = bufferSize;
+        this.heartbeatInterval = heartbeatInterval;
+        this.timeout = timeout;
+        Gauge.builder("peaktrack.events.connections", connections, AtomicInteger::get)
+                .register(meterRegistry);
+        this.droppedConnections = Counter.builder("peaktrack.events.dropped")
+                .description("Event streams closed because the client fell behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens an event stream for the user. The stream ends when the client goes away, when it
+     * times out, or when the client falls too far behind.
+     */
+    public SseEmitter subscribe(Long userId) {
+        return subscribe(userId, new SseEmitter(timeout.toMillis()));
+    }
+
+    SseEmitter subscribe(Long userId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userId, emitter);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        connections.incrementAndGet();
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        subscriber.start();
+        return emitter;
+    }
+
+    /**
+     * Queues the event on every stream of the user on this node. Call only once the write has committed.
+     */
+    public void publish(Long userId, WorkoutChangeEvent event) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            if (!subscriber.buffer.offer(event)) {
+                droppedConnections.increment();
+                subscriber.close();
+            }
+        }
+    }
+
+    /**
+     * The users with at least one open stream on this node.
+     */
+    public Set<Long> subscribedUsers() {
+        return Set.copyOf(subscribers.keySet());
+    }
+
+    /**
+     * Closes every stream of the user, so its clients reconnect and catch up from the changes feed.
+     */
+    public void close(Long userId) {
+        Set<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers != null) {
+            List.copyOf(userSubscribers).forEach(Subscriber::close);
+        }
+    }
+
+    int connectionCount() {
+        return connections.get();
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.userId, (userId, userSubscribers) -> {
+            if (userSubscribers.remove(subscriber)) {
+                connections.decrementAndGet();
+            }
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private final class Subscriber {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<WorkoutChangeEvent> buffer;
+        private volatile boolean closed;
+        private Thread sender;
+
+        private Subscriber(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private synchronized void start() {
+            if (!closed) {
+                sender = Thread.ofVirtual().name("workout-events-" + userId).start(this::run);
+            }
+        }
+
+        // Only the sender thread writes to the emitter, so frames never interleave.
+        private void run() {
+            try {
+                while (!closed) {
+                    WorkoutChangeEvent event = buffer.poll(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+                    if (closed) {
+                        break;
+                    }
+                    if (event == null) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        emitter.send(SseEmitter.event().id(event.cursor()).name(EVENT_NAME).data(event));
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Closed while waiting for the next event.
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the stream was completed under us.
+            } finally {
+                close();
+                emitter.complete();
+            }
+        }
+
+        private synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            remove(this);
+            if (sender != null && sender != Thread.currentThread()) {
+                sender.interrupt();
+            }
+        }
+    }
+}
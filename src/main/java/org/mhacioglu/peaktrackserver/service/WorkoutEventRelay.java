@@ -0,0 +1,96 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeEvent;
+import org.mhacioglu.peaktrackserver.exceptions.ChangeCursorExpiredException;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feeds the event streams open on this node from the change log, so a stream hears about
+ * writes made through any node. Each poll reads the data versions of the users with open
+ * streams in one statement per {@link #POLL_BATCH_SIZE} users, and only reads the log of
+ * those whose version moved. Events therefore reach clients within a poll interval of the
+ * commit, in version order, wherever the write was made.
+ */
+@Service
+public class WorkoutEventRelay {
+    static final int POLL_BATCH_SIZE = 500;
+
+    private final WorkoutEventBroadcaster workoutEventBroadcaster;
+    private final WorkoutChangeLog workoutChangeLog;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    // The version up to which each streaming user's changes have been announced on this node.
+    private final Map<Long, Long> announced = new ConcurrentHashMap<>();
+
+    public WorkoutEventRelay(WorkoutEventBroadcaster workoutEventBroadcaster,
+                             WorkoutChangeLog workoutChangeLog,
+                             UserRepository userRepository,
+                             PlatformTransactionManager transactionManager) {
+        this.workoutEventBroadcaster = workoutEventBroadcaster;
+        this.workoutChangeLog = workoutChangeLog;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Opens an event stream for the user that announces every write committed from now on.
+     */
+    public SseEmitter subscribe(Long userId) {
+        // Read before the stream is registered, so no write committed after it goes unannounced.
+        long version = userRepository.findDataVersionById(userId).orElse(0L);
+        synchronized (announced) {
+            announced.putIfAbsent(userId, version);
+            return workoutEventBroadcaster.subscribe(userId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${peaktrack.events.poll-interval:1s}")
+    public void poll() {
+        synchronized (announced) {
+            announced.keySet().retainAll(workoutEventBroadcaster.subscribedUsers());
+        }
+        List<Long> userIds = List.copyOf(announced.keySet());
+        for (int from = 0; from < userIds.size(); from += POLL_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + POLL_BATCH_SIZE, userIds.size()));
+            for (Object[] row : userRepository.findDataVersionsByIdIn(batch)) {
+                Long userId = (Long) row[0];
+                Long since = announced.get(userId);
+                if (since != null && (Long) row[1] > since) {
+                    // Read-write so the log is read on the primary, where the version just seen is visible.
+                    transactionTemplate.executeWithoutResult(status -> relay(userId, since));
+                }
+            }
+        }
+    }
+
+    private void relay(Long userId, long since) {
+        try {
+            WorkoutChangeLog.Changes changes;
+            do {
+                changes = workoutChangeLog.readAfter(userId, since, WorkoutService.MAX_PAGE_SIZE);
+                if (changes.version() > since) {
+                    workoutEventBroadcaster.publish(userId, new WorkoutChangeEvent(
+                            new WorkoutChangeCursor(changes.version()).encode(),
+                            changes.upserted(), changes.deleted()));
+                    since = changes.version();
+                    long version = since;
+                    announced.computeIfPresent(userId, (id, current) -> Math.max(current, version));
+                }
+            } while (changes.hasMore());
+        } catch (ChangeCursorExpiredException e) {
+            // Compacted before it was announced; the clients must resync from /changes.
+            announced.remove(userId);
+            workoutEventBroadcaster.close(userId);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExportRow;
+import org.mhacioglu.peaktrackserver.exceptions.TooManyExportsException;
+import org.mhacioglu.peaktrackserver.model.ArchivedWorkout;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
+import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Streams a user's whole workout history as NDJSON or CSV. Live and archived workouts are
+ * read in keyset pages of {@link WorkoutRepository#EXPORT_PAGE_SIZE} and merged oldest first;
+ * each page is detached from the persistence context once converted, so memory use does
+ * not grow with the length of the history. The number of exports running at once is
+ * capped per node.
+ */
+@Service
+public class WorkoutExportService {
+    static final String RELEASE_INTERCEPTOR_KEY = WorkoutExportService.class.getName() + ".release";
+    private static final Limit PAGE = Limit.of(WorkoutRepository.EXPORT_PAGE_SIZE);
+    private static final Comparator<WorkoutExportRow> OLDEST_FIRST =
+            Comparator.comparing(WorkoutExportRow::start).thenComparing(WorkoutExportRow::id);
+
+    private final WorkoutRepository workoutRepository;
+    private final ArchivedWorkoutRepository archivedWorkoutRepository;
+    private final EntityManager entityManager;
+    private final WorkoutFileCodec workoutFileCodec;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore permits;
+
+    public WorkoutExportService(WorkoutRepository workoutRepository,
+                                ArchivedWorkoutRepository archivedWorkoutRepository,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                WorkoutFileCodec workoutFileCodec,
+                                @Value("${peaktrack.export.max-concurrent:4}") int maxConcurrentExports) {
+        this.workoutRepository = workoutRepository;
+        this.archivedWorkoutRepository = archivedWorkoutRepository;
+        this.entityManager = entityManager;
+        this.workoutFileCodec = workoutFileCodec;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.permits = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Reserves an export slot and returns the body that writes the export. The slot is
+     * released when the body finishes, whether or not it succeeds, or when the request's
+     * async processing ends without the body having run.
+     *
+     * @throws TooManyExportsException if the node is already running the maximum number of exports
+     */
+    public StreamingResponseBody openExport(Long userId, ExportFormat format) {
+        if (!permits.tryAcquire()) {
+            throw new TooManyExportsException("Too many exports are running. Please try again later.");
+        }
+        AtomicBoolean held = new AtomicBoolean(true);
+        Runnable release = () -> {
+            if (held.compareAndSet(true, false)) {
+                permits.release();
+            }
+        };
+        // The body never runs if the executor rejects it or the request times out, fails or is
+        // abandoned first; async completion follows all of those.
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            WebAsyncUtils.getAsyncManager(attributes.getRequest()).registerCallableInterceptor(
+                    RELEASE_INTERCEPTOR_KEY, new CallableProcessingInterceptor() {
+                        @Override
+                        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+                            release.run();
+                        }
+                    });
+        }
+        return out -> {
+            try {
+                // The body runs on an async thread after the handler returned, so it opens its own transaction.
+                readOnlyTransaction.executeWithoutResult(status -> writeExport(userId, format, out));
+            } finally {
+                release.run();
+            }
+        };
+    }
+
+    void writeExport(Long userId, ExportFormat format, OutputStream out) {
+        // Both tables are read a page at a time and merged, so only one query is open on the
+        // connection at once and a restored or back-dated live workout still lands in order.
+        ExportPages archived = new ExportPages((afterStart, afterId) -> toRows(
+                archivedWorkoutRepository.findExportPage(userId, afterStart, afterId, PAGE),
+                ArchivedWorkout::getId, archivedWorkoutRepository::findExerciseIdsByWorkoutIdIn,
+                (workout, exerciseIds) -> new WorkoutExportRow(workout.getId(), workout.getName(),
+                        workout.getStart(), workout.getDurationInMinutes(), workout.getComment(), exerciseIds)));
+        ExportPages live = new ExportPages((afterStart, afterId) -> toRows(
+                workoutRepository.findExportPage(userId, afterStart, afterId, PAGE),
+                Workout::getId, workoutRepository::findExerciseIdsByWorkoutIdIn,
+                (workout, exerciseIds) -> new WorkoutExportRow(workout.getId(), workout.getName(),
+                        workout.getStart(), workout.getDurationInMinutes(), workout.getComment(), exerciseIds)));
+        try (SequenceWriter sequence = workoutFileCodec.writer(format).writeValues(out)) {
+            int written = 0;
+            while (archived.hasNext() || live.hasNext()) {
+                boolean archivedFirst = !live.hasNext()
+                        || archived.hasNext() && OLDEST_FIRST.compare(archived.peek(), live.peek()) < 0;
+                sequence.write((archivedFirst ? archived : live).next());
+                if (++written % WorkoutRepository.EXPORT_PAGE_SIZE == 0) {
+                    sequence.flush();
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <W> List<WorkoutExportRow> toRows(List<W> workouts, Function<W, Long> idOf,
+                                              Function<List<Long>, List<Object[]>> exerciseIdsOf,
+                                              BiFunction<W, List<Long>, WorkoutExportRow> toRow) {
+        if (workouts.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<Long>> exerciseIds = new HashMap<>();
+        for (Object[] pair : exerciseIdsOf.apply(workouts.stream().map(idOf).toList())) {
+            exerciseIds.computeIfAbsent((Long) pair[0], id -> new ArrayList<>()).add((Long) pair[1]);
+        }
+        List<WorkoutExportRow> rows = new ArrayList<>(workouts.size());
+        for (W workout : workouts) {
+            rows.add(toRow.apply(workout, exerciseIds.getOrDefault(idOf.apply(workout), List.of())));
+            entityManager.detach(workout);
+        }
+        return rows;
+    }
+
+    /**
+     * The rows of one table in (start, id) order, read a page at a time as they are consumed.
+     */
+    private static final class ExportPages {
+        private final BiFunction<LocalDateTime, Long, List<WorkoutExportRow>> pageAfter;
+        private final Deque<WorkoutExportRow> page = new ArrayDeque<>();
+        private WorkoutExportRow last;
+        private boolean exhausted;
+
+        ExportPages(BiFunction<LocalDateTime, Long, List<WorkoutExportRow>> pageAfter) {
+            this.pageAfter = pageAfter;
+        }
+
+        boolean hasNext() {
+            if (page.isEmpty() && !exhausted) {
+                List<WorkoutExportRow> rows = last == null
+                        ? pageAfter.apply(null, null)
+                        : pageAfter.apply(last.start(), last.id());
+                exhausted = rows.size() < WorkoutRepository.EXPORT_PAGE_SIZE;
+                page.addAll(rows);
+            }
+            return !page.isEmpty();
+        }
+
+        WorkoutExportRow peek() {
+            return page.getFirst();
+        }
+
+        WorkoutExportRow next() {
+            last = page.removeFirst();
+            return last;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExportRow;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readers and writers for {@link WorkoutExportRow} files, shared by export and import so
+ * that an exported file can be imported again as is. Neither side closes the stream it is
+ * given; that is left to the servlet container.
+ */
+@Component
+public class WorkoutFileCodec {
+    private final ObjectWriter ndjsonWriter;
+    private final ObjectReader ndjsonReader;
+    private final ObjectWriter csvWriter;
+    private final ObjectReader csvReader;
+
+    public WorkoutFileCodec(ObjectMapper objectMapper) {
+        this.ndjsonWriter = objectMapper.writerFor(WorkoutExportRow.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.ndjsonReader = objectMapper.readerFor(WorkoutExportRow.class);
+
+        CsvMapper csvMapper = CsvMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+                .enable(CsvParser.Feature.TRIM_SPACES)
+                .build();
+        this.csvWriter = csvMapper.writer(csvMapper.schemaFor(WorkoutExportRow.class).withHeader());
+        // Columns are taken from the header row, so files with reordered or missing columns still read.
+        this.csvReader = csvMapper.readerFor(WorkoutExportRow.class).with(CsvSchema.emptySchema().withHeader());
+    }
+
+    public ObjectWriter writer(ExportFormat format) {
+        return format == ExportFormat.CSV ? csvWriter : ndjsonWriter;
+    }
+
+    public ObjectReader reader(ExportFormat format) {
+        return format == ExportFormat.CSV ? csvReader : ndjsonReader;
+    }
+}
@@ -0,0 +1,268 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExportRow;
+import org.mhacioglu.peaktrackserver.dto.WorkoutImportSummary;
+import org.mhacioglu.peaktrackserver.dto.WorkoutInterval;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
+import org.mhacioglu.peaktrackserver.repository.ExerciseRepository;
+import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports workouts from an NDJSON or CSV file in the export format. The file is parsed as
+ * a stream and handled in chunks of {@link #CHUNK_SIZE} rows, each validated, checked for
+ * time conflicts and inserted in its own transaction. Rows that can't be stored are
+ * reported back rather than failing the import.
+ */
+@Service
+public class WorkoutImportService {
+    static final int CHUNK_SIZE = 500;
+    static final int MAX_LISTED_REJECTIONS = 100;
+
+    private final WorkoutRepository workoutRepository;
+    private final ArchivedWorkoutRepository archivedWorkoutRepository;
+    private final ExerciseRepository exerciseRepository;
+    private final UserLockService userLockService;
+    private final WorkoutRollupService workoutRollupService;
+    private final DataVersionService dataVersionService;
+    private final WorkoutChangeLog workoutChangeLog;
+    private final WorkoutFileCodec workoutFileCodec;
+    private final Validator validator;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public WorkoutImportService(WorkoutRepository workoutRepository,
+                                ArchivedWorkoutRepository archivedWorkoutRepository,
+                                ExerciseRepository exerciseRepository,
+                                UserLockService userLockService,
+                                WorkoutRollupService workoutRollupService,
+                                DataVersionService dataVersionService,
+                                WorkoutChangeLog workoutChangeLog,
+                                WorkoutFileCodec workoutFileCodec,
+                                Validator validator,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager) {
+        this.workoutRepository = workoutRepository;
+        this.archivedWorkoutRepository = archivedWorkoutRepository;
+        this.exerciseRepository = exerciseRepository;
+        this.userLockService = userLockService;
+        this.workoutRollupService = workoutRollupService;
+        this.dataVersionService = dataVersionService;
+        this.workoutChangeLog = workoutChangeLog;
+        this.workoutFileCodec = workoutFileCodec;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public WorkoutImportSummary importWorkouts(Long userId, ExportFormat format, InputStream in) {
+        Tally tally = new Tally();
+        try (MappingIterator<WorkoutExportRow> records = workoutFileCodec.reader(format).readValues(in)) {
+            List<ImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            long rowNumber = 0;
+            while (true) {
+                rowNumber++;
+                WorkoutExportRow record;
+                try {
+                    if (!records.hasNextValue()) {
+                        break;
+                    }
+                    record = records.nextValue();
+                } catch (JsonParseException e) {
+                    // The parser can't find where the next record starts, so nothing after this can be trusted.
+                    tally.reject(rowNumber, "Malformed input, import stopped here: " + e.getOriginalMessage());
+                    break;
+                } catch (JsonMappingException e) {
+                    tally.reject(rowNumber, "Unreadable record: " + e.getOriginalMessage());
+                    continue;
+                }
+                chunk.add(new ImportRow(rowNumber, record));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(userId, chunk, tally);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(userId, chunk, tally);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tally.summary();
+    }
+
+    private void importChunk(Long userId, List<ImportRow> chunk, Tally tally) {
+        transactionTemplate.executeWithoutResult(status -> {
+            RegisteredUser user = userLockService.lockForWrite(userId, "import");
+            List<ImportRow> valid = toWorkouts(chunk, user, tally);
+            List<Workout> accepted = withoutConflicts(user, valid, tally);
+
+            if (!accepted.isEmpty()) {
+                dataVersionService.bump(user);
+            }
+            workoutRepository.saveAll(accepted);
+            workoutRollupService.apply(userId, List.of(), workoutRollupService.contributionsOf(accepted));
+            if (!accepted.isEmpty()) {
+                workoutChangeLog.record(user, accepted.stream().map(Workout::getId).toList(), List.of());
+            }
+            workoutRepository.flush();
+            // Keep the persistence context from growing with the size of the file.
+            entityManager.clear();
+            tally.accepted += accepted.size();
+        });
+    }
+
+    private List<ImportRow> toWorkouts(List<ImportRow> chunk, RegisteredUser user, Tally tally) {
+        Set<Long> exerciseIds = chunk.stream()
+                .map(row -> row.record.exerciseIds())
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Exercise> exercises = exerciseRepository.findAllById(exerciseIds).stream()
+                .collect(Collectors.toMap(Exercise::getId, Function.identity()));
+
+        List<ImportRow> valid = new ArrayList<>(chunk.size());
+        for (ImportRow row : chunk) {
+            List<Long> ids = row.record.exerciseIds() == null ? List.of() :
+                    row.record.exerciseIds().stream().filter(Objects::nonNull).distinct().toList();
+            Set<Long> unknown = ids.stream()
+                    .filter(id -> !exercises.containsKey(id))
+                    .collect(Collectors.toCollection(TreeSet::new));
+            if (!unknown.isEmpty()) {
+                tally.reject(row.number, "Unknown exercise ids: " + unknown);
+                continue;
+            }
+
+            Workout workout = Workout.builder()
+                    .name(row.record.name())
+                    .start(row.record.start())
+                    .durationInMinutes(row.record.durationInMinutes())
+                    .comment(row.record.comment())
+                    .exercises(new ArrayList<>(ids.stream().map(exercises::get).toList()))
+                    .user(user)
+                    .build();
+            Set<ConstraintViolation<Workout>> violations = validator.validate(workout);
+            if (!violations.isEmpty()) {
+                tally.reject(row.number, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                continue;
+            }
+            row.workout = workout;
+            valid.add(row);
+        }
+        return valid;
+    }
+
+    /**
+     * Sweeps the chunk in start order against the user's stored workouts, live or archived,
+     * in the chunk's time span, also in start order. A row overlaps a stored workout that starts no later than it
+     * does exactly when the latest end among those reaches its start, and one that starts
+     * later exactly when the first of those starts before it ends. Rows accepted earlier in
+     * the sweep all start no later than the current one, so the latest of their ends is
+     * enough to check against them. Bounds are inclusive, as in single-item writes.
+     */
+    private List<Workout> withoutConflicts(RegisteredUser user, List<ImportRow> rows, Tally tally) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        rows.sort(Comparator.comparing((ImportRow row) -> row.workout.getStart()).thenComparing(row -> row.number));
+        LocalDateTime spanStart = rows.getFirst().workout.getStart();
+        LocalDateTime spanEnd = rows.stream().map(ImportRow::end).max(Comparator.naturalOrder()).orElseThrow();
+        List<WorkoutInterval> stored = workoutRepository.findIntervals(user.getId(), spanStart, spanEnd);
+        if (WorkoutArchiveService.reaches(user.getArchivedUntil(), spanStart)) {
+            stored = new ArrayList<>(stored);
+            stored.addAll(archivedWorkoutRepository.findIntervals(user.getId(), spanStart, spanEnd));
+            stored.sort(Comparator.comparing(WorkoutInterval::start));
+        }
+
+        List<Workout> accepted = new ArrayList<>(rows.size());
+        LocalDateTime latestStoredEnd = null;
+        LocalDateTime latestAcceptedEnd = null;
+        int next = 0;
+        for (ImportRow row : rows) {
+            LocalDateTime start = row.workout.getStart();
+            LocalDateTime end = row.end();
+            while (next < stored.size() && !stored.get(next).start().isAfter(start)) {
+                latestStoredEnd = later(latestStoredEnd, stored.get(next).end());
+                next++;
+            }
+            boolean overlapsStored = (latestStoredEnd != null && !latestStoredEnd.isBefore(start))
+                    || (next < stored.size() && !stored.get(next).start().isAfter(end));
+            if (overlapsStored) {
+                tally.reject(row.number, "Overlaps an existing workout");
+            } else if (latestAcceptedEnd != null && !latestAcceptedEnd.isBefore(start)) {
+                tally.reject(row.number, "Overlaps an earlier row of the import");
+            } else {
+                accepted.add(row.workout);
+                latestAcceptedEnd = later(latestAcceptedEnd, end);
+            }
+        }
+        return accepted;
+    }
+
+    private static LocalDateTime later(LocalDateTime current, LocalDateTime candidate) {
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+
+    private static final class ImportRow {
+        private final long number;
+        private final WorkoutExportRow record;
+        private Workout workout;
+
+        private ImportRow(long number, WorkoutExportRow record) {
+            this.number = number;
+            this.record = record;
+        }
+
+        private LocalDateTime end() {
+            return workout.getStart().plusMinutes(workout.getDurationInMinutes());
+        }
+    }
+
+    private static final class Tally {
+        private int accepted;
+        private int rejected;
+        private final List<WorkoutImportSummary.Rejection> rejections = new ArrayList<>();
+
+        private void reject(long row, String reason) {
+            rejected++;
+            if (rejections.size() < MAX_LISTED_REJECTIONS) {
+                rejections.add(new WorkoutImportSummary.Rejection(row, reason));
+            }
+        }
+
+        private WorkoutImportSummary summary() {
+            rejections.sort(Comparator.comparingLong(WorkoutImportSummary.Rejection::row));
+            return new WorkoutImportSummary(accepted, rejected, List.copyOf(rejections));
+        }
+    }
+}
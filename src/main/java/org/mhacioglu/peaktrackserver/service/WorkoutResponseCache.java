@@ -0,0 +1,110 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.mhacioglu.peaktrackserver.dto.ResponseFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Serialized read responses per user, reused while the user's data version is unchanged.
+ * Each response carries a strong ETag derived from its bytes, so a client that already
+ * has the current body can be answered with 304 without running a query or serializing
+ * anything. Responses are cached per {@link ResponseFormat}, encoded with the same
+ * mappers as the message converters. Entries are bounded by their total size in bytes
+ * and expire after a while even if the data doesn't change.
+ */
+@Service
+public class WorkoutResponseCache {
+    private final DataVersionService dataVersionService;
+    private final Map<ResponseFormat, ObjectMapper> objectMappers;
+    private final Cache<Key, Entry> entries;
+
+    public WorkoutResponseCache(DataVersionService dataVersionService,
+                                ObjectMapper objectMapper,
+                                MappingJackson2CborHttpMessageConverter cborConverter,
+                                MappingJackson2SmileHttpMessageConverter smileConverter,
+                                @Value("${peaktrack.response-cache.max-bytes:67108864}") long maxBytes,
+                                @Value("${peaktrack.response-cache.ttl:10m}") Duration ttl) {
+        this.dataVersionService = dataVersionService;
+        this.objectMappers = new EnumMap<>(Map.of(
+                ResponseFormat.JSON, objectMapper,
+                ResponseFormat.CBOR, cborConverter.getObjectMapper(),
+                ResponseFormat.SMILE, smileConverter.getObjectMapper()));
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> entry.response().body().length)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * A response body and its ETag, quoted as it goes in the header.
+     */
+    public record CachedResponse(String etag, byte[] body) {
+    }
+
+    /**
+     * A freshly computed value and the time after which it may differ even without a write,
+     * or {@code null} if only writes change it.
+     */
+    public record Computed(Object value, LocalDateTime validUntil) {
+    }
+
+    private record Key(Long userId, String variant, ResponseFormat format) {
+    }
+
+    private record Entry(long version, LocalDateTime validUntil, CachedResponse response) {
+    }
+
+    /**
+     * Returns the cached response for the user and variant if it was computed at the
+     * current data version and is still valid, and computes and caches it otherwise.
+     *
+     * @param variant identifies the endpoint and any parameters that change the response
+     * @param format  the encoding of the body
+     */
+    public CachedResponse get(Long userId, String variant, ResponseFormat format, Supplier<Computed> compute) {
+        // Read the version before the data, so an entry is never filed under a newer version than its content.
+        long version = dataVersionService.currentVersion(userId);
+        Key key = new Key(userId, variant, format);
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.version() == version
+                && (entry.validUntil() == null || !LocalDateTime.now().isAfter(entry.validUntil()))) {
+            return entry.response();
+        }
+
+        Computed computed = compute.get();
+        byte[] body;
+        try {
+            body = objectMappers.get(format).writeValueAsBytes(computed.value());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+        CachedResponse response = new CachedResponse(etagOf(body), body);
+        entries.put(key, new Entry(version, computed.validUntil(), response));
+        return response;
+    }
+
+    private static String etagOf(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
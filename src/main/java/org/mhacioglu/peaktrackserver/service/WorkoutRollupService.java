@@ -0,0 +1,154 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.mhacioglu.peaktrackserver.dto.ReportPeriod;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPeriodTotals;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.model.WorkoutDailyRollup;
+import org.mhacioglu.peaktrackserver.repository.ExerciseRepository;
+import org.mhacioglu.peaktrackserver.repository.WorkoutDailyRollupRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps {@link WorkoutDailyRollup} rows in step with the workouts they summarize and
+ * builds period reports from them. Callers pass in what the written workouts contributed
+ * before and after the write; since every workout write holds the user's row lock, the
+ * read-modify-write of the affected days can't interleave with another one.
+ */
+@Service
+public class WorkoutRollupService {
+    private final WorkoutDailyRollupRepository workoutDailyRollupRepository;
+    private final ExerciseRepository exerciseRepository;
+
+    public WorkoutRollupService(WorkoutDailyRollupRepository workoutDailyRollupRepository,
+                                ExerciseRepository exerciseRepository) {
+        this.workoutDailyRollupRepository = workoutDailyRollupRepository;
+        this.exerciseRepository = exerciseRepository;
+    }
+
+    /**
+     * What one workout adds to the rollup of the day it starts on.
+     */
+    public record Contribution(LocalDate day, int minutes, Set<Exercise.Category> categories) {
+    }
+
+    /**
+     * Snapshots what the workouts currently contribute. Categories are looked up by exercise
+     * id in one query, since the exercises of a workout received from a client may carry
+     * only their ids.
+     */
+    public List<Contribution> contributionsOf(Collection<Workout> workouts) {
+        Set<Long> exerciseIds = workouts.stream()
+                .map(Workout::getExercises)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .map(Exercise::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, Exercise.Category> categories = new HashMap<>();
+        if (!exerciseIds.isEmpty()) {
+            for (Object[] pair : exerciseRepository.findCategoriesByIdIn(exerciseIds)) {
+                if (pair[1] != null) {
+                    categories.put((Long) pair[0], (Exercise.Category) pair[1]);
+                }
+            }
+        }
+
+        List<Contribution> contributions = new ArrayList<>(workouts.size());
+        for (Workout workout : workouts) {
+            Set<Exercise.Category> workoutCategories = EnumSet.noneOf(Exercise.Category.class);
+            if (workout.getExercises() != null) {
+                workout.getExercises().stream()
+                        .map(exercise -> categories.get(exercise.getId()))
+                        .filter(Objects::nonNull)
+                        .forEach(workoutCategories::add);
+            }
+            contributions.add(new Contribution(workout.getStart().toLocalDate(),
+                    workout.getDurationInMinutes(), workoutCategories));
+        }
+        return contributions;
+    }
+
+    /**
+     * Subtracts the removed contributions from, and adds the added ones to, the user's daily
+     * rollups. Days left without workouts lose their row.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(Long userId, Collection<Contribution> removed, Collection<Contribution> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, WorkoutDailyRollup> rollups = new HashMap<>();
+        List<WorkoutDailyRollup.Key> keys = new ArrayList<>();
+        for (Contribution contribution : removed) {
+            keys.add(new WorkoutDailyRollup.Key(userId, contribution.day()));
+        }
+        for (Contribution contribution : added) {
+            keys.add(new WorkoutDailyRollup.Key(userId, contribution.day()));
+        }
+        workoutDailyRollupRepository.findAllById(keys)
+                .forEach(rollup -> rollups.put(rollup.getWorkoutDate(), rollup));
+
+        removed.forEach(contribution -> add(rollups, userId, contribution, -1));
+        added.forEach(contribution -> add(rollups, userId, contribution, 1));
+
+        List<WorkoutDailyRollup> emptied = rollups.values().stream()
+                .filter(rollup -> rollup.getSessions() <= 0)
+                .toList();
+        workoutDailyRollupRepository.deleteAll(emptied);
+        workoutDailyRollupRepository.saveAll(rollups.values().stream()
+                .filter(rollup -> rollup.getSessions() > 0)
+                .toList());
+    }
+
+    private static void add(Map<LocalDate, WorkoutDailyRollup> rollups, Long userId,
+                            Contribution contribution, int sign) {
+        WorkoutDailyRollup rollup = rollups.computeIfAbsent(contribution.day(),
+                day -> new WorkoutDailyRollup(userId, day));
+        rollup.setSessions(rollup.getSessions() + sign);
+        rollup.setTotalMinutes(rollup.getTotalMinutes() + sign * contribution.minutes());
+        for (Exercise.Category category : contribution.categories()) {
+            rollup.addMinutes(category, sign * contribution.minutes());
+        }
+    }
+
+    /**
+     * Totals per week, month or year for days in [from, to], oldest first. Either bound
+     * may be {@code null}. Reads one row per day with workouts in the range.
+     */
+    @Transactional(readOnly = true)
+    public List<WorkoutPeriodTotals> report(Long userId, ReportPeriod period, LocalDate from, LocalDate to) {
+        Map<LocalDate, List<WorkoutDailyRollup>> byPeriod = workoutDailyRollupRepository
+                .findAllBetween(userId, from, to).stream()
+                .collect(Collectors.groupingBy(rollup -> period.startOf(rollup.getWorkoutDate()),
+                        LinkedHashMap::new, Collectors.toList()));
+
+        List<WorkoutPeriodTotals> totals = new ArrayList<>(byPeriod.size());
+        byPeriod.forEach((periodStart, rollups) -> {
+            Map<Exercise.Category, Integer> minutesByCategory = new EnumMap<>(Exercise.Category.class);
+            for (Exercise.Category category : Exercise.Category.values()) {
+                minutesByCategory.put(category, rollups.stream().mapToInt(rollup -> rollup.getMinutes(category)).sum());
+            }
+            totals.add(new WorkoutPeriodTotals(periodStart,
+                    rollups.stream().mapToInt(WorkoutDailyRollup::getSessions).sum(),
+                    rollups.stream().mapToInt(WorkoutDailyRollup::getTotalMinutes).sum(),
+                    minutesByCategory));
+        });
+        return totals;
+    }
+}
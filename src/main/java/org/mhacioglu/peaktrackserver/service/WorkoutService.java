@@ -1,100 +1,452 @@
 package org.mhacioglu.peaktrackserver.service;
 
+import org.mhacioglu.peaktrackserver.dto.ExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchResult;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChanges;
+import org.mhacioglu.peaktrackserver.dto.WorkoutCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPage;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
 import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutBatchException;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutNotFoundException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutTimeConflictException;
+import org.mhacioglu.peaktrackserver.model.ArchivedWorkout;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
 import org.mhacioglu.peaktrackserver.model.Workout;
 import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
 import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class WorkoutService {
-    private final WorkoutRepository workoutRepository;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 500;
 
-    public WorkoutService(WorkoutRepository workoutRepository) {
+    private final WorkoutRepository workoutRepository;
+    private final UserLockService userLockService;
+    private final WorkoutRollupService workoutRollupService;
+    private final DataVersionService dataVersionService;
+    private final WorkoutChangeLog workoutChangeLog;
+    private final ArchivedWorkoutRepository archivedWorkoutRepository;
+    private final WorkoutArchiveService workoutArchiveService;
+
+    public WorkoutService(WorkoutRepository workoutRepository,
+                          UserLockService userLockService,
+                          WorkoutRollupService workoutRollupService,
+                          DataVersionService dataVersionService,
+                          WorkoutChangeLog workoutChangeLog,
+                          ArchivedWorkoutRepository archivedWorkoutRepository,
+                          WorkoutArchiveService workoutArchiveService) {
         this.workoutRepository = workoutRepository;
+        this.userLockService = userLockService;
+        this.workoutRollupService = workoutRollupService;
+        this.dataVersionService = dataVersionService;
+        this.workoutChangeLog = workoutChangeLog;
+        this.archivedWorkoutRepository = archivedWorkoutRepository;
+        this.workoutArchiveService = workoutArchiveService;
     }
 
 
 
-    public List<WorkoutSummary> listAllPastWorkouts(RegisteredUser registeredUser) {
-        List<Workout> workouts = registeredUser.getWorkouts();
-        
-        workouts = workouts.stream().
-                filter(w -> LocalDateTime.now().isAfter(w.getStart().plusMinutes(w.getDurationInMinutes())))
-                .sorted(Comparator.comparing(Workout::getStart, Comparator.reverseOrder())).toList();
-
-        return workouts.stream().map(workout -> WorkoutSummary.builder()
-                .workoutName(workout.getName())
-                .workoutStart(workout.getStart())
-                .workoutDuration(workout.getDurationInMinutes())
-                .build()).toList();
+    /**
+     * @param fields the summary fields to read and return; the others are left {@code null}
+     */
+    @Transactional(readOnly = true)
+    public List<WorkoutSummary> listAllPastWorkouts(Long userId, Set<WorkoutSummaryField> fields) {
+        LocalDateTime now = LocalDateTime.now();
+        if (workoutArchiveService.archivedUntil(userId) == null) {
+            return workoutRepository.findSummariesEndedBefore(userId, now, fields);
+        }
+        // Workouts ending before their archived neighbours may still be live, so the two lists
+        // interleave. Start is read to order them even if it wasn't asked for.
+        Set<WorkoutSummaryField> read = EnumSet.of(WorkoutSummaryField.WORKOUT_START);
+        read.addAll(fields);
+        List<WorkoutSummary> merged = new ArrayList<>(workoutRepository.findSummariesEndedBefore(userId, now, read));
+        merged.addAll(archivedWorkoutRepository.findSummariesEndedBefore(userId, now, read));
+        merged.sort(Comparator.comparing(WorkoutSummary::getWorkoutStart).reversed());
+        if (!fields.contains(WorkoutSummaryField.WORKOUT_START)) {
+            merged.forEach(summary -> summary.setWorkoutStart(null));
+        }
+        return merged;
+    }
 
+    /**
+     * The earliest time after which {@link #listAllPastWorkouts} may return more workouts
+     * without any write: the end of the first workout that hasn't finished at {@code now},
+     * or {@code null} if there is none.
+     */
+    @Transactional(readOnly = true)
+    public LocalDateTime pastWorkoutsValidUntil(Long userId, LocalDateTime now) {
+        return workoutRepository.findNextEndTime(userId, now);
     }
 
 
 
-    public List<Workout> getWorkoutsBetween(LocalDateTime from, LocalDateTime to, RegisteredUser registeredUser) {
-        List<Workout> workouts = registeredUser.getWorkouts();
+    /**
+     * The user's workouts starting between the bounds, projected straight from the query.
+     * Takes one statement for the workouts and, if they were asked for, one for all their
+     * exercises, however many there are.
+     *
+     * @param fields the workout fields to read and return; the others are left {@code null}
+     */
+    @Transactional(readOnly = true)
+    public List<WorkoutView> getWorkoutsBetween(LocalDateTime from, LocalDateTime to, Long userId,
+                                                Set<WorkoutField> fields) {
         if (from != null && to != null && from.isAfter(to)) {
             throw new InvalidWorkoutDataException("Beginning date cannot be after end date");
         }
-        if (from != null) {
-            workouts = workouts.stream().filter(w -> w.getStart().isAfter(from))
-                    .collect(Collectors.toCollection(ArrayList::new));
+        boolean archived = WorkoutArchiveService.reaches(workoutArchiveService.archivedUntil(userId), from);
+        List<WorkoutView> workouts;
+        if (archived) {
+            Set<WorkoutField> read = withStart(fields);
+            workouts = newestFirst(workoutRepository.findViewsBetween(userId, from, to, read),
+                    archivedWorkoutRepository.findViewsBetween(userId, from, to, read), fields);
+        } else {
+            workouts = workoutRepository.findViewsBetween(userId, from, to, fields);
+        }
+        if (!fields.contains(WorkoutField.EXERCISES) || workouts.isEmpty()) {
+            return workouts;
+        }
+        List<WorkoutExerciseView> exercises = new ArrayList<>(workoutRepository.findExerciseViewsBetween(userId, from, to));
+        if (archived) {
+            exercises.addAll(archivedWorkoutRepository.findExerciseViewsBetween(userId, from, to));
+        }
+        return withExercises(workouts, exercises);
+    }
 
+    /**
+     * Reads one page of the workouts {@link #getWorkoutsBetween} would return. The page is
+     * located by keyset on (start, id), so its cost does not grow with the page number.
+     *
+     * @param after  cursor returned with the previous page, or {@code null} for the first page
+     * @param fields as for {@link #getWorkoutsBetween}
+     */
+    @Transactional(readOnly = true)
+    public WorkoutPage getWorkoutPage(LocalDateTime from, LocalDateTime to, Long userId, int limit, String after,
+                                      Set<WorkoutField> fields) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new InvalidWorkoutDataException("Beginning date cannot be after end date");
         }
-        if (to != null) {
-            workouts = workouts.stream().filter(w -> w.getStart().isBefore(to))
-                    .collect(Collectors.toCollection(ArrayList::new));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidWorkoutDataException("Page size must be between 1 and " + MAX_PAGE_SIZE);
         }
-        workouts.sort(Comparator.comparing(Workout::getStart, Comparator.reverseOrder()));
-        return workouts;
+        WorkoutCursor cursor = after == null ? null : WorkoutCursor.decode(after);
+
+        // One extra row tells whether another page follows.
+        LocalDateTime afterStart = cursor == null ? null : cursor.start();
+        Long afterId = cursor == null ? null : cursor.id();
+        List<WorkoutCursor> keys = workoutRepository.findPageKeys(userId, from, to, afterStart, afterId,
+                Limit.of(limit + 1));
+        // The archive's keys are merged in, so the cursor works across both tables.
+        boolean archived = WorkoutArchiveService.reaches(workoutArchiveService.archivedUntil(userId), from);
+        if (archived) {
+            List<WorkoutCursor> merged = new ArrayList<>(keys);
+            merged.addAll(archivedWorkoutRepository.findPageKeys(userId, from, to, afterStart, afterId,
+                    Limit.of(limit + 1)));
+            merged.sort(Comparator.comparing(WorkoutCursor::start).thenComparing(WorkoutCursor::id).reversed());
+            keys = merged.size() > limit + 1 ? merged.subList(0, limit + 1) : merged;
+        }
+        boolean hasMore = keys.size() > limit;
+        if (hasMore) {
+            keys = keys.subList(0, limit);
+        }
+        if (keys.isEmpty()) {
+            return new WorkoutPage(List.of(), null);
+        }
+
+        List<Long> ids = keys.stream().map(WorkoutCursor::id).toList();
+        List<WorkoutView> workouts = viewsByIdIn(ids, fields, archived);
+        // The page's keys carry the position even if start wasn't asked for.
+        String nextCursor = hasMore ? keys.getLast().encode() : null;
+        return new WorkoutPage(workouts, nextCursor);
     }
 
+    /**
+     * The workouts created, updated or deleted after the cursor, or just the current cursor if
+     * there is none. Upserts carry every field and are read with one statement for the
+     * workouts and one for their exercises.
+     *
+     * @param since cursor returned by the previous call, or {@code null}
+     */
+    @Transactional(readOnly = true)
+    public WorkoutChanges getChanges(Long userId, String since, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidWorkoutDataException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (since == null) {
+            return new WorkoutChanges(List.of(), List.of(),
+                    new WorkoutChangeCursor(dataVersionService.currentVersion(userId)).encode(), false);
+        }
+        WorkoutChangeLog.Changes changes = workoutChangeLog.readAfter(userId,
+                WorkoutChangeCursor.decode(since).version(), limit);
+
+        // A workout deleted after the changes were read is missing here; its tombstone comes next time.
+        List<WorkoutView> upserts = List.of();
+        if (!changes.upserted().isEmpty()) {
+            // An old workout may have been archived since it changed.
+            upserts = viewsByIdIn(changes.upserted(), WorkoutField.ALL,
+                    workoutArchiveService.archivedUntil(userId) != null);
+        }
+        return new WorkoutChanges(upserts, changes.deleted(),
+                new WorkoutChangeCursor(changes.version()).encode(), changes.hasMore());
+    }
 
-    public Workout addWorkout(Workout workout, RegisteredUser registeredUser) {
-        List<Workout> workouts = registeredUser.getWorkouts();
-        if (checkIfWorkoutTimeIsValid(workouts, workout)) {
-            registeredUser.addWorkout(workout);
+    /**
+     * The given workouts, newest first, looked up in the archive too if {@code archived}.
+     */
+    private List<WorkoutView> viewsByIdIn(List<Long> ids, Set<WorkoutField> fields, boolean archived) {
+        Set<WorkoutField> read = archived ? withStart(fields) : fields;
+        List<WorkoutView> workouts = workoutRepository.findViewsByIdIn(ids, read);
+        List<Long> missing = List.of();
+        if (archived) {
+            Set<Long> found = new HashSet<>(workouts.stream().map(WorkoutView::id).toList());
+            missing = ids.stream().filter(id -> !found.contains(id)).toList();
+            workouts = newestFirst(workouts, missing.isEmpty() ? List.of()
+                    : archivedWorkoutRepository.findViewsByIdIn(missing, read), fields);
         }
+        if (!fields.contains(WorkoutField.EXERCISES) || workouts.isEmpty()) {
+            return workouts;
+        }
+        List<WorkoutExerciseView> exercises = new ArrayList<>(workoutRepository.findExerciseViewsByWorkoutIdIn(ids));
+        if (!missing.isEmpty()) {
+            exercises.addAll(archivedWorkoutRepository.findExerciseViewsByWorkoutIdIn(missing));
+        }
+        return withExercises(workouts, exercises);
+    }
+
+    private static Set<WorkoutField> withStart(Set<WorkoutField> fields) {
+        Set<WorkoutField> read = EnumSet.of(WorkoutField.START);
+        read.addAll(fields);
+        return read;
+    }
 
-        return workoutRepository.save(workout);
+    /**
+     * Live and archived workouts read with their start, merged newest first, with the start
+     * dropped again unless it is one of the requested {@code fields}.
+     */
+    private static List<WorkoutView> newestFirst(List<WorkoutView> live, List<WorkoutView> archived,
+                                                 Set<WorkoutField> fields) {
+        List<WorkoutView> merged = new ArrayList<>(live);
+        merged.addAll(archived);
+        merged.sort(Comparator.comparing(WorkoutView::start).thenComparing(WorkoutView::id).reversed());
+        if (fields.contains(WorkoutField.START)) {
+            return merged;
+        }
+        return merged.stream()
+                .map(view -> new WorkoutView(view.id(), view.name(), null, view.durationInMinutes(), view.comment(),
+                        view.exercises()))
+                .toList();
+    }
 
+    private static List<WorkoutView> withExercises(List<WorkoutView> workouts, List<WorkoutExerciseView> exercises) {
+        Map<Long, List<ExerciseView>> byWorkout = new HashMap<>();
+        for (WorkoutExerciseView exercise : exercises) {
+            byWorkout.computeIfAbsent(exercise.workoutId(), id -> new ArrayList<>()).add(exercise.exercise());
+        }
+        return workouts.stream()
+                .map(workout -> workout.withExercises(byWorkout.getOrDefault(workout.id(), List.of())))
+                .toList();
     }
 
 
-    public void deleteWorkout(Long workoutId, RegisteredUser registeredUser) {
-        List<Workout> workouts = registeredUser.getWorkouts();
-        Workout workoutToBeDeleted = workouts.stream()
-                .filter(w -> w.getId().longValue() == workoutId)
-                .findFirst().orElseThrow(() -> new WorkoutNotFoundException(workoutId));
+    // Writes lock the user's row first, so the conflict check and the save of one user's
+    // concurrent requests run one after the other.
+    @Transactional
+    public Workout addWorkout(Workout workout, Long userId) {
+        RegisteredUser registeredUser = userLockService.lockForWrite(userId, "create");
+        dataVersionService.bump(registeredUser);
+        checkIfWorkoutTimeIsValid(registeredUser, workout, null);
+
+        workout.setUser(registeredUser);
+
+        Workout saved = workoutRepository.save(workout);
+        workoutRollupService.apply(userId, List.of(), workoutRollupService.contributionsOf(List.of(saved)));
+        workoutChangeLog.record(registeredUser, List.of(saved.getId()), List.of());
+        return saved;
 
-        registeredUser.deleteWorkout(workoutToBeDeleted);
-        workoutRepository.deleteById(workoutId);
     }
 
-    public Workout updateWorkout(Workout workout, RegisteredUser registeredUser) {
+
+    @Transactional
+    public void deleteWorkout(Long workoutId, Long userId) {
+        RegisteredUser registeredUser = userLockService.lockForWrite(userId, "delete");
+        dataVersionService.bump(registeredUser);
+        workoutArchiveService.restore(registeredUser, List.of(workoutId));
+        Workout workoutToBeDeleted = workoutRepository.findByIdAndUserId(workoutId, userId)
+                .orElseThrow(() -> new WorkoutNotFoundException(workoutId));
+
+        workoutRollupService.apply(userId, workoutRollupService.contributionsOf(List.of(workoutToBeDeleted)), List.of());
+        workoutRepository.delete(workoutToBeDeleted);
+        workoutChangeLog.record(registeredUser, List.of(), List.of(workoutId));
+    }
+
+    @Transactional
+    public Workout updateWorkout(Workout workout, Long userId) {
         if (workout.getId() == null) {
             throw new InvalidWorkoutDataException("A workout must have a valid workout id.");
         }
+        RegisteredUser registeredUser = userLockService.lockForWrite(userId, "update");
+        dataVersionService.bump(registeredUser);
+        // An archived workout is moved back first, so it is written like any other.
+        workoutArchiveService.restore(registeredUser, List.of(workout.getId()));
+
+        Workout existingWorkout = workoutRepository.findByIdAndUserId(workout.getId(), userId)
+                .orElseThrow(() -> new WorkoutNotFoundException(workout.getId()));
+
+        if (workout.getStart() != null) {
+            checkIfWorkoutTimeIsValid(registeredUser, workout, workout.getId());
+        }
+        List<WorkoutRollupService.Contribution> before = workoutRollupService.contributionsOf(List.of(existingWorkout));
+        applyUpdate(existingWorkout, workout);
 
-        Optional<Workout> optionalWorkout = registeredUser.getWorkouts().stream().
-                filter(w -> w.getId().longValue() == workout.getId().longValue()).findFirst();
+        Workout saved = workoutRepository.save(existingWorkout);
+        workoutRollupService.apply(userId, before, workoutRollupService.contributionsOf(List.of(saved)));
+        workoutChangeLog.record(registeredUser, List.of(saved.getId()), List.of());
+        return saved;
+
+    }
 
-        Workout existingWorkout = optionalWorkout.orElseThrow(
-                () -> new WorkoutNotFoundException(workout.getId())
-        );
+    /**
+     * Applies an ordered list of creates, updates and deletes in one transaction. Either all
+     * operations succeed or none is stored; the first failing operation is reported through a
+     * {@link WorkoutBatchException} carrying its index.
+     *
+     * <p>Time conflicts are checked once for the whole batch: the final state of every
+     * workout the batch creates or updates is swept in start order together with the user's
+     * other workouts in the same time span, which are read with a single query.
+     */
+    @Transactional
+    public List<WorkoutBatchResult> applyBatch(List<WorkoutBatchOperation> operations, Long userId) {
+        if (operations == null || operations.isEmpty() || operations.size() > MAX_BATCH_SIZE) {
+            throw new InvalidWorkoutDataException("A batch must contain between 1 and " + MAX_BATCH_SIZE + " operations");
+        }
+        RegisteredUser registeredUser = userLockService.lockForWrite(userId, "batch");
+        dataVersionService.bump(registeredUser);
+
+        Set<Long> targetIds = new HashSet<>();
+        for (WorkoutBatchOperation operation : operations) {
+            if (operation.getType() == WorkoutBatchOperation.Type.DELETE && operation.getWorkoutId() != null) {
+                targetIds.add(operation.getWorkoutId());
+            } else if (operation.getType() == WorkoutBatchOperation.Type.UPDATE
+                    && operation.getWorkout() != null && operation.getWorkout().getId() != null) {
+                targetIds.add(operation.getWorkout().getId());
+            }
+        }
+        Map<Long, Workout> liveWorkouts = new HashMap<>();
+        if (!targetIds.isEmpty()) {
+            workoutArchiveService.restore(registeredUser, targetIds);
+            workoutRepository.findAllByUserIdAndIdIn(userId, targetIds)
+                    .forEach(workout -> liveWorkouts.put(workout.getId(), workout));
+        }
+        // What the targeted workouts add to the rollups before the batch changes them.
+        List<WorkoutRollupService.Contribution> before = workoutRollupService.contributionsOf(liveWorkouts.values());
+
+        List<Workout> created = new ArrayList<>();
+        List<Workout> deleted = new ArrayList<>();
+        // Workouts whose final state comes from this batch, with the last operation that wrote them.
+        Map<Workout, Integer> written = new IdentityHashMap<>();
+        List<WorkoutBatchResult> results = new ArrayList<>(operations.size());
+        // The workout each result reports, rendered once the whole batch is written.
+        List<Workout> resultWorkouts = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            WorkoutBatchOperation operation = operations.get(i);
+            try {
+                if (operation.getType() == null) {
+                    throw new InvalidWorkoutDataException("An operation must have a type.");
+                }
+                Workout workout = switch (operation.getType()) {
+                    case CREATE -> {
+                        Workout newWorkout = operation.getWorkout();
+                        if (newWorkout == null || newWorkout.getStart() == null) {
+                            throw new InvalidWorkoutDataException("A workout must have a valid start date.");
+                        }
+                        newWorkout.setId(null);
+                        newWorkout.setUser(registeredUser);
+                        created.add(newWorkout);
+                        written.put(newWorkout, i);
+                        yield newWorkout;
+                    }
+                    case UPDATE -> {
+                        Workout patch = operation.getWorkout();
+                        if (patch == null || patch.getId() == null) {
+                            throw new InvalidWorkoutDataException("A workout must have a valid workout id.");
+                        }
+                        Workout existingWorkout = liveWorkouts.get(patch.getId());
+                        if (existingWorkout == null) {
+                            throw new WorkoutNotFoundException(patch.getId());
+                        }
+                        applyUpdate(existingWorkout, patch);
+                        written.put(existingWorkout, i);
+                        yield existingWorkout;
+                    }
+                    case DELETE -> {
+                        if (operation.getWorkoutId() == null) {
+                            throw new InvalidWorkoutDataException("A workout must have a valid workout id.");
+                        }
+                        Workout existingWorkout = liveWorkouts.remove(operation.getWorkoutId());
+                        if (existingWorkout == null) {
+                            throw new WorkoutNotFoundException(operation.getWorkoutId());
+                        }
+                        deleted.add(existingWorkout);
+                        written.remove(existingWorkout);
+                        yield null;
+                    }
+                };
+                results.add(WorkoutBatchResult.builder()
+                        .index(i)
+                        .type(operation.getType())
+                        .workoutId(operation.getWorkoutId())
+                        .build());
+                resultWorkouts.add(workout);
+            } catch (WorkoutException e) {
+                throw new WorkoutBatchException(i, e);
+            }
+        }
 
+        checkBatchForConflicts(registeredUser, written, targetIds);
+
+        workoutRepository.deleteAll(deleted);
+        workoutRepository.saveAll(created);
+        workoutRepository.flush();
+        // Targets that were not deleted were updated, so every surviving workout the batch touched is in the written set.
+        workoutRollupService.apply(userId, before, workoutRollupService.contributionsOf(written.keySet()));
+        workoutChangeLog.record(registeredUser,
+                written.keySet().stream().map(Workout::getId).toList(),
+                deleted.stream().map(Workout::getId).toList());
+
+        for (int i = 0; i < results.size(); i++) {
+            Workout workout = resultWorkouts.get(i);
+            if (workout != null) {
+                results.get(i).setWorkout(WorkoutView.of(workout));
+                results.get(i).setWorkoutId(workout.getId());
+            }
+        }
+        return results;
+    }
+
+
+    private static void applyUpdate(Workout existingWorkout, Workout workout) {
         if (workout.getName() != null) {
             existingWorkout.setName(workout.getName());
         }
@@ -104,9 +456,6 @@ public class WorkoutService {
         }
 
         if (workout.getStart() != null) {
-            List<Workout> otherWorkouts = registeredUser.getWorkouts().stream()
-                    .filter(w -> w.getId().longValue() != workout.getId().longValue()).toList();
-            checkIfWorkoutTimeIsValid(otherWorkouts, workout);
             existingWorkout.setStart(workout.getStart());
             existingWorkout.setDurationInMinutes(workout.getDurationInMinutes());
         }
@@ -114,27 +463,90 @@ public class WorkoutService {
         if (workout.getExercises() != null) {
             existingWorkout.setExercises(workout.getExercises());
         }
+    }
 
-        return workoutRepository.save(existingWorkout);
+    /**
+     * Sweeps the batch's workouts and the user's other workouts in their time span in start
+     * order. A workout overlaps an earlier one exactly when it starts no later than the
+     * latest end seen so far, so keeping the latest end of all workouts (to check batch
+     * workouts) and of batch workouts only (to check the others) finds every conflict that
+     * involves the batch in one pass. Bounds are inclusive, as in single-item writes.
+     */
+    private void checkBatchForConflicts(RegisteredUser user, Map<Workout, Integer> written, Set<Long> targetIds) {
+        Long userId = user.getId();
+        if (written.isEmpty()) {
+            return;
+        }
+        List<Workout> timeline = new ArrayList<>(written.keySet());
+        LocalDateTime spanStart = timeline.stream().map(Workout::getStart).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime spanEnd = timeline.stream().map(WorkoutService::endOf).max(Comparator.naturalOrder()).orElseThrow();
+        workoutRepository.findOverlapping(userId, spanStart, spanEnd, null, Limit.unlimited()).stream()
+                .filter(workout -> !targetIds.contains(workout.getId()))
+                .forEach(timeline::add);
+        // The batch's targets were restored, so the archive holds none of them.
+        if (WorkoutArchiveService.reaches(user.getArchivedUntil(), spanStart)) {
+            archivedWorkoutRepository.findOverlapping(userId, spanStart, spanEnd, Limit.unlimited()).stream()
+                    .map(WorkoutService::asWorkout)
+                    .forEach(timeline::add);
+        }
+        timeline.sort(Comparator.comparing(Workout::getStart));
+
+        Workout latestOfAll = null;
+        Workout latestOfBatch = null;
+        for (Workout workout : timeline) {
+            boolean inBatch = written.containsKey(workout);
+            Workout previous = inBatch ? latestOfAll : latestOfBatch;
+            if (previous != null && !workout.getStart().isAfter(endOf(previous))) {
+                Workout batchWorkout = inBatch ? workout : previous;
+                Workout otherWorkout = inBatch ? previous : workout;
+                throw new WorkoutBatchException(written.get(batchWorkout), new WorkoutTimeConflictException(
+                        otherWorkout.getId(), batchWorkout.getId(),
+                        otherWorkout.getStart(), batchWorkout.getStart(),
+                        endOf(otherWorkout), endOf(batchWorkout)));
+            }
+            if (latestOfAll == null || endOf(workout).isAfter(endOf(latestOfAll))) {
+                latestOfAll = workout;
+            }
+            if (inBatch && (latestOfBatch == null || endOf(workout).isAfter(endOf(latestOfBatch)))) {
+                latestOfBatch = workout;
+            }
+        }
+    }
 
+    // Computed rather than read from endTime, which is only refreshed when the entity is flushed.
+    private static LocalDateTime endOf(Workout workout) {
+        return workout.getStart().plusMinutes(workout.getDurationInMinutes());
     }
 
+    // A stand-in with the archived workout's id and time span, for the conflict checks.
+    private static Workout asWorkout(ArchivedWorkout archived) {
+        return Workout.builder()
+                .id(archived.getId())
+                .start(archived.getStart())
+                .durationInMinutes(archived.getDurationInMinutes())
+                .endTime(archived.getEndTime())
+                .build();
+    }
 
-    private boolean checkIfWorkoutTimeIsValid(List<Workout> workouts, Workout newWorkout) {
+    private void checkIfWorkoutTimeIsValid(RegisteredUser user, Workout newWorkout, Long excludedId) {
+        Long userId = user.getId();
         LocalDateTime newStart = newWorkout.getStart();
         if (newStart == null) {
             throw new InvalidWorkoutDataException("A workout must have a valid start date.");
         }
         LocalDateTime newEnd = newStart.plusMinutes(newWorkout.getDurationInMinutes());
-        workouts.forEach(workout -> {
-            LocalDateTime start = workout.getStart();
-            LocalDateTime end = start.plusMinutes(workout.getDurationInMinutes());
-            if (!(newEnd.isBefore(start) || newStart.isAfter(end))) {
-                throw new WorkoutTimeConflictException(workout.getId(), newWorkout.getId(),
-                        start, newStart, end, newEnd);
-            }
-        });
-        return true;
+        List<Workout> conflicts = workoutRepository.findOverlapping(userId, newStart, newEnd, excludedId, Limit.of(1));
+        // Archived workouts all ended before archivedUntil, so only an earlier start can reach them.
+        if (conflicts.isEmpty() && WorkoutArchiveService.reaches(user.getArchivedUntil(), newStart)) {
+            conflicts = archivedWorkoutRepository.findOverlapping(userId, newStart, newEnd, Limit.of(1)).stream()
+                    .map(WorkoutService::asWorkout)
+                    .toList();
+        }
+        if (!conflicts.isEmpty()) {
+            Workout workout = conflicts.getFirst();
+            throw new WorkoutTimeConflictException(workout.getId(), newWorkout.getId(),
+                    workout.getStart(), newStart, workout.getEndTime(), newEnd);
+        }
     }
 
 
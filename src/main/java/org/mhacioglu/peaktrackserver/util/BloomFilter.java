@@ -0,0 +1,58 @@
+package org.mhacioglu.peaktrackserver.util;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe bloom filter over SHA-256 hex digests. Since the digest is already
+ * uniformly distributed, its first two 64-bit words are used directly for double hashing.
+ * Elements cannot be removed; callers rebuild the filter when entries should disappear.
+ */
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2));
+        this.bits = new AtomicLongArray((int) Math.max(1, (m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * LN2));
+    }
+
+    public void put(String hexDigest) {
+        long h1 = word(hexDigest, 0);
+        long h2 = word(hexDigest, 16);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            int slot = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(slot);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(slot, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String hexDigest) {
+        long h1 = word(hexDigest, 0);
+        long h2 = word(hexDigest, 16);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long word(String hexDigest, int offset) {
+        return HexFormat.fromHexDigitsToLong(hexDigest, offset, offset + 16);
+    }
+}
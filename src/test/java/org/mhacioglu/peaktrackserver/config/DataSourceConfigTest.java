@@ -0,0 +1,48 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataSourceConfigTest {
+    private HikariDataSource pool;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:lazy_connections;DB_CLOSE_DELAY=-1");
+        DataSource dataSource = new DataSourceConfig().dataSource(pool,
+                new StaticListableBeanFactory().getBeanProvider(ReplicaRoutingDataSource.class));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readOnlyTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @DisplayName("A transaction takes a pooled connection at its first statement and returns it when it ends")
+    @Test
+    void transaction_ShouldHoldAConnectionOnlyFromItsFirstStatement() {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            assertEquals(0, pool.getHikariPoolMXBean().getActiveConnections());
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+            assertEquals(1, pool.getHikariPoolMXBean().getActiveConnections());
+        });
+        assertEquals(0, pool.getHikariPoolMXBean().getActiveConnections());
+    }
+}
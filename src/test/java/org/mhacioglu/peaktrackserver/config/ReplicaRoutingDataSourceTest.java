@@ -0,0 +1,139 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.mhacioglu.peaktrackserver.service.DataVersionService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Routes between two in-memory H2 databases standing in for the primary and a replica. The
+ * replica isn't fed by replication, so the tests copy rows to it to simulate it catching up.
+ */
+public class ReplicaRoutingDataSourceTest {
+    private static final long USER_ID = 1L;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private UserRepository userRepository;
+    private DataVersionService dataVersionService;
+    private ReplicaRoutingDataSource router;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnlyTransaction;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(database("routing_primary", "primary"));
+        replica = new JdbcTemplate(database("routing_replica", "replica"));
+        userRepository = mock(UserRepository.class);
+        dataVersionService = new DataVersionService(userRepository, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        router = new ReplicaRoutingDataSource(primary.getDataSource(),
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", replica.getDataSource())),
+                Duration.ofSeconds(2), () -> dataVersionService, () -> USER_ID, new SimpleMeterRegistry());
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary.getDataSource());
+        dataSource.setReadOnlyDataSource(router);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.execute("DROP ALL OBJECTS");
+        replica.execute("DROP ALL OBJECTS");
+    }
+
+    @DisplayName("Read-only transactions use a replica only while its lag is within the limit")
+    @Test
+    void readOnly_ShouldUseAReplicaThatIsCloseEnough() {
+        assertEquals("primary", readOnlyRead(), "lag hasn't been measured yet");
+
+        catchUp();
+        assertEquals("replica", readOnlyRead());
+        assertEquals("primary", transaction.execute(status -> whoAnswers()));
+
+        replica.update("UPDATE replica_heartbeat SET beat_millis = ?", System.currentTimeMillis() - 10_000);
+        router.measureLag();
+        assertEquals("primary", readOnlyRead());
+    }
+
+    @DisplayName("A user's reads stay on the primary after their write, and until the replica has their version")
+    @Test
+    void readOnly_ShouldReadTheUsersOwnWrites() {
+        catchUp();
+        RegisteredUser user = new RegisteredUser();
+        user.setId(USER_ID);
+        user.setDataVersion(4);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dataVersionService.bump(user);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        primary.update("UPDATE registered_user SET data_version = 5 WHERE id = ?", USER_ID);
+        replica.update("UPDATE registered_user SET data_version = 5 WHERE id = ?", USER_ID);
+        assertEquals("primary", readOnlyRead(), "the user just wrote on this node");
+
+        // Another node, which learned of version 5 from the primary but never wrote for the user.
+        replica.update("UPDATE registered_user SET data_version = 4 WHERE id = ?", USER_ID);
+        DataVersionService otherNode = new DataVersionService(userRepository, 100, Duration.ofMinutes(1),
+                Duration.ofMinutes(1));
+        dataVersionService = otherNode;
+        when(userRepository.findDataVersionById(USER_ID)).thenReturn(Optional.of(5L));
+        otherNode.currentVersion(USER_ID);
+        assertEquals("primary", readOnlyRead(), "the replica doesn't have version 5 yet");
+
+        replica.update("UPDATE registered_user SET data_version = 5 WHERE id = ?", USER_ID);
+        assertEquals("replica", readOnlyRead());
+    }
+
+    private String readOnlyRead() {
+        return readOnlyTransaction.execute(status -> whoAnswers());
+    }
+
+    private String whoAnswers() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private void catchUp() {
+        router.measureLag();
+        replica.update("UPDATE replica_heartbeat SET beat_millis = ?",
+                primary.queryForObject("SELECT beat_millis FROM replica_heartbeat", Long.class));
+        router.measureLag();
+    }
+
+    private static JdbcDataSource database(String name, String node) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbc.update("INSERT INTO node VALUES (?)", node);
+        jdbc.execute("CREATE TABLE replica_heartbeat (id INT PRIMARY KEY, beat_millis BIGINT NOT NULL)");
+        jdbc.update("INSERT INTO replica_heartbeat VALUES (1, 0)");
+        jdbc.execute("CREATE TABLE registered_user (id BIGINT PRIMARY KEY, data_version BIGINT NOT NULL)");
+        jdbc.update("INSERT INTO registered_user VALUES (?, 4)", USER_ID);
+        return dataSource;
+    }
+}
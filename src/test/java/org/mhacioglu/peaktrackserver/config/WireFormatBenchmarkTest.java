@@ -0,0 +1,102 @@
+package org.mhacioglu.peaktrackserver.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.ExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the response formats on a realistic workout history: a few years of sessions
+ * with a handful of exercises each. Sizes are asserted; encode and decode times depend on
+ * the machine, so they are only logged.
+ */
+@Slf4j
+public class WireFormatBenchmarkTest {
+    private static final int WORKOUTS = 1000;
+    private static final int ROUNDS = 20;
+
+    @DisplayName("CBOR and Smile round-trip a workout history in fewer bytes than JSON")
+    @Test
+    void binaryFormats_ShouldBeSmallerThanJson() throws Exception {
+        WebConfig webConfig = new WebConfig(null);
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", new Jackson2ObjectMapperBuilder()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
+        mappers.put("cbor", webConfig.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper());
+        mappers.put("smile", webConfig.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder()).getObjectMapper());
+
+        WorkoutView[] history = history();
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+            byte[] body = mapper.writeValueAsBytes(history);
+            assertArrayEquals(history, mapper.readValue(body, WorkoutView[].class), entry.getKey());
+            sizes.put(entry.getKey(), body.length);
+
+            long bestEncode = Long.MAX_VALUE;
+            long bestDecode = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long started = System.nanoTime();
+                body = mapper.writeValueAsBytes(history);
+                long encoded = System.nanoTime();
+                mapper.readValue(body, WorkoutView[].class);
+                bestEncode = Math.min(bestEncode, encoded - started);
+                bestDecode = Math.min(bestDecode, System.nanoTime() - encoded);
+            }
+            log.info("{}: {} bytes, encode {} us, decode {} us", entry.getKey(), body.length,
+                    bestEncode / 1000, bestDecode / 1000);
+        }
+
+        assertTrue(sizes.get("cbor") < sizes.get("json"), sizes.toString());
+        assertTrue(sizes.get("smile") < sizes.get("json"), sizes.toString());
+    }
+
+    private static WorkoutView[] history() {
+        Random random = new Random(42);
+        ExerciseView[] catalog = {
+                exercise(1, "Squat", "Back squat, full depth", 0),
+                exercise(2, "Bench press", "Barbell, flat bench", 1),
+                exercise(3, "Deadlift", "Conventional stance", 2),
+                exercise(4, "Running", "Outdoor, easy pace", 3),
+                exercise(5, "Plank", null, 4),
+                exercise(6, "Pull-up", "Bodyweight", 5),
+                exercise(7, "Lunges", "Walking", 6),
+                exercise(8, "Rowing", "Machine", 7)
+        };
+        LocalDateTime start = LocalDateTime.of(2021, 1, 4, 7, 30);
+        WorkoutView[] history = new WorkoutView[WORKOUTS];
+        for (int i = 0; i < WORKOUTS; i++) {
+            int count = 3 + random.nextInt(3);
+            List<ExerciseView> exercises = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                exercises.add(catalog[random.nextInt(catalog.length)]);
+            }
+            history[i] = new WorkoutView((long) i + 1, "Session " + (i + 1),
+                    start.plusDays(i).plusMinutes(random.nextInt(600)), 30 + random.nextInt(60),
+                    random.nextBoolean() ? "Felt good, kept the rest short" : null, exercises);
+        }
+        return history;
+    }
+
+    private static ExerciseView exercise(long id, String name, String description, int index) {
+        return new ExerciseView(id, name, description,
+                Exercise.Category.values()[index % Exercise.Category.values().length],
+                Exercise.MuscleGroup.values()[index % Exercise.MuscleGroup.values().length],
+                3 + index % 3, 8 + index, 20 + 5 * index);
+    }
+}
@@ -13,6 +13,7 @@ import org.mhacioglu.peaktrackserver.exceptions.UsernameAlreadyExistsException;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
 import org.mhacioglu.peaktrackserver.service.AuthenticationService;
 import org.mhacioglu.peaktrackserver.service.JwtService;
+import org.mhacioglu.peaktrackserver.service.UserService;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -48,6 +49,9 @@ public class AuthControllerTest {
     @MockBean
     private AuthenticationService authenticationService;
 
+    @MockBean
+    private UserService userService;
+
 
     private RegisterUserDto registerUserDto;
     private LoginUserDto loginUserDto;
@@ -93,7 +97,7 @@ public class AuthControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.username").value(registerUserDto.getUsername()))
-                .andExpect(jsonPath("$.password").value("encoded_password"));
+                .andExpect(jsonPath("$.password").doesNotExist());
 
         verify(authenticationService, times(1)).signUp(any(RegisterUserDto.class));
 
@@ -210,5 +214,24 @@ public class AuthControllerTest {
 
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("Logout user from every device")
+    public void logoutAll_success_ShouldRevokeAllTokens() throws Exception {
+        RequestBuilder rb = MockMvcRequestBuilders
+                .post("/auth/logout-all")
+                .with(csrf())
+                .accept(MediaType.APPLICATION_JSON)
+                .header("Authorization", "test.jwt.token")
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mockMvc.perform(rb)
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        verify(jwtService, times(1)).revokeAllTokens(any(String.class));
+        verify(jwtService, never()).blacklistToken(any(String.class));
+    }
+
 
 }
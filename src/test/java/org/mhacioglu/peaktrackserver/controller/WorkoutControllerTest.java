@@ -1,36 +1,76 @@
 package org.mhacioglu.peaktrackserver.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mhacioglu.peaktrackserver.config.JwtAuthenticationFilter;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.ReportPeriod;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChanges;
+import org.mhacioglu.peaktrackserver.dto.WorkoutImportSummary;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPage;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPeriodTotals;
+import org.mhacioglu.peaktrackserver.exceptions.ChangeCursorExpiredException;
 import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+import org.mhacioglu.peaktrackserver.exceptions.TooManyExportsException;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutBatchException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutNotFoundException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutTimeConflictException;
+import org.mhacioglu.peaktrackserver.model.AuthenticatedUser;
+import org.mhacioglu.peaktrackserver.model.Exercise;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
 import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+import org.mhacioglu.peaktrackserver.service.DataVersionService;
+import org.mhacioglu.peaktrackserver.service.IdempotencyService;
 import org.mhacioglu.peaktrackserver.service.JwtService;
 import org.mhacioglu.peaktrackserver.service.UserService;
+import org.mhacioglu.peaktrackserver.service.WorkoutEventRelay;
+import org.mhacioglu.peaktrackserver.service.WorkoutExportService;
+import org.mhacioglu.peaktrackserver.service.WorkoutImportService;
+import org.mhacioglu.peaktrackserver.service.WorkoutResponseCache;
+import org.mhacioglu.peaktrackserver.service.WorkoutRollupService;
 import org.mhacioglu.peaktrackserver.service.WorkoutService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -38,13 +78,35 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(WorkoutController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import(WorkoutResponseCache.class)
 public class WorkoutControllerTest {
+    // Every test sees a data version of its own, so responses cached by earlier tests are never reused.
+    private static final AtomicLong dataVersions = new AtomicLong();
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private WorkoutService workoutService;
 
+    @MockBean
+    private WorkoutExportService workoutExportService;
+
+    @MockBean
+    private WorkoutImportService workoutImportService;
+
+    @MockBean
+    private WorkoutRollupService workoutRollupService;
+
+    @MockBean
+    private WorkoutEventRelay workoutEventRelay;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private DataVersionService dataVersionService;
+
     @MockBean
     private UserService userService;
 
@@ -61,8 +123,14 @@ public class WorkoutControllerTest {
     private Workout futureWorkout;
     private RegisteredUser registeredUser;
 
+    private static List<WorkoutView> views(Workout... workouts) {
+        return Arrays.stream(workouts).map(WorkoutView::of).toList();
+    }
+
     @BeforeEach
     public void setup() {
+        when(dataVersionService.currentVersion(anyLong())).thenReturn(dataVersions.incrementAndGet());
+
         registeredUser = new RegisteredUser();
         registeredUser.setId(1L);
         registeredUser.setUsername("username");
@@ -96,7 +164,15 @@ public class WorkoutControllerTest {
         registeredUser.setWorkouts(new ArrayList<>(List.of(ongoingWorkout, futureWorkout, pastWorkout)));
 
 
-        when(userService.getCurrentUser()).thenReturn(registeredUser);
+        // Filters are disabled, so put the principal the JWT filter would have built in place.
+        AuthenticatedUser principal = new AuthenticatedUser(registeredUser.getId(), registeredUser.getUsername(), 0);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
         @Test
@@ -108,8 +184,8 @@ public class WorkoutControllerTest {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
             String from = tenHoursAgo.format(formatter);
             String to = tenHoursAfter.format(formatter);
-            when(workoutService.getWorkoutsBetween(eq(null), eq(null), eq(registeredUser)))
-                    .thenReturn(List.of(futureWorkout, ongoingWorkout, pastWorkout));
+            when(workoutService.getWorkoutsBetween(eq(null), eq(null), eq(registeredUser.getId()), eq(WorkoutField.ALL)))
+                    .thenReturn(views(futureWorkout, ongoingWorkout, pastWorkout));
 
             mockMvc.perform(get("/api/workout/all")
                             .accept(MediaType.APPLICATION_JSON))
@@ -126,8 +202,8 @@ public class WorkoutControllerTest {
                             && !date.isBefore(tenHoursAgo.minusMinutes(1))),
                     argThat(date -> date != null && !date.isAfter(tenHoursAfter.plusMinutes(1))
                             && !date.isBefore(tenHoursAfter.minusMinutes(1))),
-                    eq(registeredUser)))
-                    .thenReturn(List.of(ongoingWorkout));
+                    eq(registeredUser.getId()), eq(WorkoutField.ALL)))
+                    .thenReturn(views(ongoingWorkout));
 
             mockMvc.perform(get("/api/workout/all")
                             .param("from", from)
@@ -143,8 +219,8 @@ public class WorkoutControllerTest {
                     argThat(date -> date != null && !date.isAfter(tenHoursAgo.plusMinutes(1))
                             && !date.isBefore(tenHoursAgo.minusMinutes(1))),
                     eq(null),
-                    eq(registeredUser)))
-                    .thenReturn(List.of(futureWorkout, ongoingWorkout));
+                    eq(registeredUser.getId()), eq(WorkoutField.ALL)))
+                    .thenReturn(views(futureWorkout, ongoingWorkout));
 
 
             mockMvc.perform(get("/api/workout/all")
@@ -162,8 +238,8 @@ public class WorkoutControllerTest {
                     eq(null),
                     argThat(date -> date != null && !date.isAfter(tenHoursAfter.plusMinutes(1))
                             && !date.isBefore(tenHoursAfter.minusMinutes(1))),
-                    eq(registeredUser)))
-                    .thenReturn(List.of(ongoingWorkout, pastWorkout));
+                    eq(registeredUser.getId()), eq(WorkoutField.ALL)))
+                    .thenReturn(views(ongoingWorkout, pastWorkout));
 
 
             mockMvc.perform(get("/api/workout/all")
@@ -182,7 +258,7 @@ public class WorkoutControllerTest {
                             && !date.isBefore(tenHoursAfter.minusMinutes(1))),
                     argThat(date -> date != null && !date.isAfter(tenHoursAgo.plusMinutes(1))
                             && !date.isBefore(tenHoursAgo.minusMinutes(1))),
-                    eq(registeredUser))).thenThrow(new InvalidWorkoutDataException("Invalid date"));
+                    eq(registeredUser.getId()), eq(WorkoutField.ALL))).thenThrow(new InvalidWorkoutDataException("Invalid date"));
 
 
             mockMvc.perform(get("/api/workout/all")
@@ -197,11 +273,80 @@ public class WorkoutControllerTest {
                         assertTrue(message.contains("Invalid date"));
                     });
 
-            verify(userService, times(5)).getCurrentUser();
-            verify(workoutService, times(5)).getWorkoutsBetween(any(), any(), any());
+            verify(userService, never()).findUserId(any());
+            verify(workoutService, times(5)).getWorkoutsBetween(any(), any(), any(), anySet());
+
+    }
+
+
+    @Test
+    @DisplayName("A limited request returns one page and the cursor of the next one in a header")
+    void getAllWorkouts_ShouldReturnPageAndNextCursor() throws Exception {
+        when(workoutService.getWorkoutPage(eq(null), eq(null), eq(registeredUser.getId()), eq(2), eq(null), eq(WorkoutField.ALL)))
+                .thenReturn(new WorkoutPage(views(futureWorkout, ongoingWorkout), "next-page"));
+
+        mockMvc.perform(get("/api/workout/all")
+                        .param("limit", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(WorkoutController.NEXT_CURSOR_HEADER, "next-page"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(2));
+
+        verify(workoutService, never()).getWorkoutsBetween(any(), any(), any(), anySet());
+    }
+
+    @Test
+    @DisplayName("Workouts listed without exercises carry no exercise list")
+    void getAllWorkouts_ShouldLeaveOutExercisesWhenAsked() throws Exception {
+        WorkoutView withoutExercises = new WorkoutView(pastWorkout.getId(), pastWorkout.getName(),
+                pastWorkout.getStart(), pastWorkout.getDurationInMinutes(), pastWorkout.getComment());
+        when(workoutService.getWorkoutsBetween(null, null, registeredUser.getId(),
+                EnumSet.complementOf(EnumSet.of(WorkoutField.EXERCISES))))
+                .thenReturn(List.of(withoutExercises));
+
+        mockMvc.perform(get("/api/workout/all").param("includeExercises", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].exercises").doesNotExist());
+
+        verify(workoutService, never()).getWorkoutsBetween(any(), any(), any(), eq(WorkoutField.ALL));
+    }
+
+    @Test
+    @DisplayName("Workouts are narrowed to the requested fields and unknown fields are rejected")
+    void getAllWorkouts_ShouldReturnOnlyRequestedFields() throws Exception {
+        when(workoutService.getWorkoutsBetween(null, null, registeredUser.getId(),
+                EnumSet.of(WorkoutField.ID, WorkoutField.NAME)))
+                .thenReturn(List.of(new WorkoutView(pastWorkout.getId(), pastWorkout.getName(), null, null, null)));
 
+        mockMvc.perform(get("/api/workout/all").param("fields", "id, name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value(pastWorkout.getName()))
+                .andExpect(jsonPath("$[0].start").doesNotExist())
+                .andExpect(jsonPath("$[0].exercises").doesNotExist());
+
+        mockMvc.perform(get("/api/workout/all").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @DisplayName("A failing batch operation is reported with its index")
+    void batch_ShouldReportFailingOperationIndex() throws Exception {
+        List<WorkoutBatchOperation> operations = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(1L).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(9L).build());
+
+        when(workoutService.applyBatch(eq(operations), eq(registeredUser.getId())))
+                .thenThrow(new WorkoutBatchException(1, new WorkoutNotFoundException(9L)));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/workout/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(operations)))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.operationIndex").value(1));
+    }
 
     @Test
     @DisplayName("Create a new workout and return the created workout")
@@ -221,7 +366,7 @@ public class WorkoutControllerTest {
                 .id(4L)
                 .build();
 
-        when(workoutService.addWorkout(request, registeredUser)).thenReturn(response);
+        when(workoutService.addWorkout(request, registeredUser.getId())).thenReturn(response);
 
         RequestBuilder rb = MockMvcRequestBuilders
                 .post("/api/workout/create")
@@ -235,8 +380,8 @@ public class WorkoutControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id").value(4L));
 
-        verify(workoutService, times(1)).addWorkout(request, registeredUser);
-        verify(userService, times(1)).getCurrentUser();
+        verify(workoutService, times(1)).addWorkout(request, registeredUser.getId());
+        verify(userService, never()).findUserId(any());
     }
 
     @Test
@@ -248,7 +393,7 @@ public class WorkoutControllerTest {
                 .build();
 
 
-        when(workoutService.addWorkout(eq(update), eq(registeredUser)))
+        when(workoutService.addWorkout(eq(update), eq(registeredUser.getId())))
                 .thenThrow(new WorkoutTimeConflictException(
                         "Timing conflict detected!"
                 ));
@@ -268,7 +413,7 @@ public class WorkoutControllerTest {
                     assertTrue(message.contains("Timing conflict detected"));
                 });
 
-        verify(userService, times(1)).getCurrentUser();
+        verify(userService, never()).findUserId(any());
     }
 
     @Test
@@ -280,7 +425,7 @@ public class WorkoutControllerTest {
                 .build();
 
 
-        when(workoutService.addWorkout(eq(w2), eq(registeredUser)))
+        when(workoutService.addWorkout(eq(w2), eq(registeredUser.getId())))
                 .thenThrow(new InvalidWorkoutDataException("A workout must have a valid start date."));
 
         RequestBuilder rb = MockMvcRequestBuilders
@@ -298,7 +443,7 @@ public class WorkoutControllerTest {
                     assertEquals(message, "A workout must have a valid start date.");
                 });
 
-        verify(userService, times(1)).getCurrentUser();
+        verify(userService, never()).findUserId(any());
     }
 
 
@@ -320,7 +465,7 @@ public class WorkoutControllerTest {
                 .user(registeredUser)
                 .build();
 
-        when(workoutService.updateWorkout(eq(req), eq(registeredUser)))
+        when(workoutService.updateWorkout(eq(req), eq(registeredUser.getId())))
                 .thenReturn(res);
 
         RequestBuilder requestBuilder = MockMvcRequestBuilders
@@ -335,7 +480,7 @@ public class WorkoutControllerTest {
                 .andExpect(jsonPath("$.name").value("Updated workout"));
 
 
-        verify(workoutService, times(1)).updateWorkout(eq(req), eq(registeredUser));
+        verify(workoutService, times(1)).updateWorkout(eq(req), eq(registeredUser.getId()));
     }
 
     @Test
@@ -348,7 +493,7 @@ public class WorkoutControllerTest {
                 .durationInMinutes(90)
                 .build();
 
-        when(workoutService.updateWorkout(updatedWorkout, registeredUser))
+        when(workoutService.updateWorkout(updatedWorkout, registeredUser.getId()))
                 .thenThrow(new WorkoutTimeConflictException("Timing conflict detected"));
 
 
@@ -379,7 +524,7 @@ public class WorkoutControllerTest {
                 .durationInMinutes(45)
                 .build();
 
-        when(workoutService.updateWorkout(eq(update), eq(registeredUser)))
+        when(workoutService.updateWorkout(eq(update), eq(registeredUser.getId())))
                 .thenThrow(new InvalidWorkoutDataException("A workout must have a valid workout ID"));
 
         RequestBuilder rb = MockMvcRequestBuilders
@@ -415,7 +560,7 @@ public class WorkoutControllerTest {
                 .content(objectMapper.writeValueAsString(updatedWorkout))
                 .contentType(MediaType.APPLICATION_JSON);
 
-        when(workoutService.updateWorkout(eq(updatedWorkout), eq(registeredUser)))
+        when(workoutService.updateWorkout(eq(updatedWorkout), eq(registeredUser.getId())))
                 .thenThrow(new WorkoutNotFoundException(updatedWorkout.getId()));
 
         mockMvc.perform(rb)
@@ -428,7 +573,7 @@ public class WorkoutControllerTest {
                             message);
                 });
 
-        verify(workoutService, times(1)).updateWorkout(eq(updatedWorkout), eq(registeredUser));
+        verify(workoutService, times(1)).updateWorkout(eq(updatedWorkout), eq(registeredUser.getId()));
     }
 
     @Test
@@ -436,14 +581,14 @@ public class WorkoutControllerTest {
     void deleteWorkout_ShouldReturn204NoContent() throws Exception {
         mockMvc.perform(delete("/api/workout/delete/{workoutId}", 1L))
                 .andExpect(status().isNoContent());
-        verify(workoutService, times(1)).deleteWorkout(eq(1L), eq(registeredUser));
+        verify(workoutService, times(1)).deleteWorkout(eq(1L), eq(registeredUser.getId()));
     }
 
     @Test
     @DisplayName("Delete a workout which doesn't belong to the current user")
     void deleteWorkout_ShouldReturn404NotFound() throws Exception {
         doThrow(new WorkoutNotFoundException(4L))
-                .when(workoutService).deleteWorkout(eq(4L), eq(registeredUser));
+                .when(workoutService).deleteWorkout(eq(4L), eq(registeredUser.getId()));
 
         mockMvc.perform(delete("/api/workout/delete/{workoutId}", 4L))
                 .andExpect(status().isNotFound())
@@ -454,9 +599,192 @@ public class WorkoutControllerTest {
                             message);
                 });
 
-        verify(workoutService, times(1)).deleteWorkout(eq(4L), eq(registeredUser));
+        verify(workoutService, times(1)).deleteWorkout(eq(4L), eq(registeredUser.getId()));
+
+    }
+
+    @Test
+    @DisplayName("Export streams the history as a CSV attachment")
+    void export_ShouldStreamCsvAttachment() throws Exception {
+        when(workoutExportService.openExport(eq(registeredUser.getId()), eq(ExportFormat.CSV)))
+                .thenReturn(out -> out.write("id,name\n".getBytes()));
+
+        MvcResult result = mockMvc.perform(get("/api/workout/export").param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"workouts.csv\""))
+                .andExpect(content().string("id,name\n"));
+    }
+
+    @Test
+    @DisplayName("Export is rejected with 429 when too many exports are running")
+    void export_ShouldReturn429WhenBusy() throws Exception {
+        when(workoutExportService.openExport(eq(registeredUser.getId()), eq(ExportFormat.NDJSON)))
+                .thenThrow(new TooManyExportsException("Too many exports are running. Please try again later."));
+
+        mockMvc.perform(get("/api/workout/export"))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    @DisplayName("Export with an unknown format is rejected")
+    void export_ShouldReturn400ForUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/workout/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(workoutExportService);
+    }
+
+    @Test
+    @DisplayName("Import passes the request body to the import and returns its summary")
+    void importWorkouts_ShouldReturnSummary() throws Exception {
+        WorkoutImportSummary summary = new WorkoutImportSummary(1, 1,
+                List.of(new WorkoutImportSummary.Rejection(2, "Overlaps an existing workout")));
+        when(workoutImportService.importWorkouts(eq(registeredUser.getId()), eq(ExportFormat.CSV), any(InputStream.class)))
+                .thenReturn(summary);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/workout/import")
+                        .param("format", "csv")
+                        .contentType("text/csv")
+                        .content("name,start,durationInMinutes\nRun,2024-01-10T08:00:00,30\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.rejections[0].row").value(2));
+    }
+
+    @Test
+    @DisplayName("Period report returns the totals of the requested period and range")
+    void periodReport_ShouldReturnTotals() throws Exception {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 3, 31);
+        when(workoutRollupService.report(eq(registeredUser.getId()), eq(ReportPeriod.MONTHLY), eq(from), eq(to)))
+                .thenReturn(List.of(new WorkoutPeriodTotals(LocalDate.of(2024, 2, 1), 3, 150,
+                        Map.of(Exercise.Category.CARDIO, 90))));
+
+        mockMvc.perform(get("/api/workout/report/{period}", "monthly")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].periodStart").value("2024-02-01"))
+                .andExpect(jsonPath("$[0].sessions").value(3))
+                .andExpect(jsonPath("$[0].totalMinutes").value(150))
+                .andExpect(jsonPath("$[0].minutesByCategory.CARDIO").value(90));
+    }
+
+    @Test
+    @DisplayName("Period report with an unknown period is rejected")
+    void periodReport_ShouldReturn400ForUnknownPeriod() throws Exception {
+        mockMvc.perform(get("/api/workout/report/{period}", "daily"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(workoutRollupService);
+    }
 
+    @Test
+    @DisplayName("Report is answered with 304 for a matching ETag without being rebuilt")
+    void report_ShouldReturn304ForMatchingETag() throws Exception {
+        when(workoutService.listAllPastWorkouts(registeredUser.getId(), WorkoutSummaryField.ALL)).thenReturn(List.of(WorkoutSummary.builder()
+                .workoutName("Workout 1")
+                .workoutStart(pastWorkout.getStart())
+                .workoutDuration(60)
+                .build()));
+
+        String etag = mockMvc.perform(get("/api/workout/generateReport"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andExpect(jsonPath("$[0].workoutName").value("Workout 1"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/workout/generateReport").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        verify(workoutService, times(1)).listAllPastWorkouts(registeredUser.getId(), WorkoutSummaryField.ALL);
+    }
+
+    @Test
+    @DisplayName("All workouts are rebuilt once the data version changes")
+    void getAllWorkouts_ShouldRebuildAfterDataVersionChanges() throws Exception {
+        when(workoutService.getWorkoutsBetween(null, null, registeredUser.getId(), WorkoutField.ALL))
+                .thenReturn(views(pastWorkout), views(pastWorkout, futureWorkout));
+
+        String etag = mockMvc.perform(get("/api/workout/all"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        when(dataVersionService.currentVersion(anyLong())).thenReturn(dataVersions.incrementAndGet());
+        mockMvc.perform(get("/api/workout/all").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
     }
 
+    @Test
+    @DisplayName("Workouts are sent as CBOR or Smile when the Accept header asks for them")
+    void getAllWorkouts_ShouldNegotiateBinaryFormats() throws Exception {
+        when(workoutService.getWorkoutsBetween(null, null, registeredUser.getId(), WorkoutField.ALL))
+                .thenReturn(views(pastWorkout, futureWorkout));
+        when(workoutService.getWorkoutPage(null, null, registeredUser.getId(), 1, null, WorkoutField.ALL))
+                .thenReturn(new WorkoutPage(views(pastWorkout), null));
+
+        byte[] cbor = mockMvc.perform(get("/api/workout/all").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+        WorkoutView[] decoded = new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule())
+                .readValue(cbor, WorkoutView[].class);
+        assertEquals(views(pastWorkout, futureWorkout), List.of(decoded));
+
+        mockMvc.perform(get("/api/workout/all").param("limit", "1")
+                        .header(HttpHeaders.ACCEPT, "application/json;q=0.5, application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"));
+    }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Changes are returned after the cursor, and an expired cursor is answered with 410")
+    void changes_ShouldReturnChangesOrGone() throws Exception {
+        when(workoutService.getChanges(registeredUser.getId(), "fresh", WorkoutService.MAX_PAGE_SIZE))
+                .thenReturn(new WorkoutChanges(views(pastWorkout), List.of(42L), "next", false));
+        when(workoutService.getChanges(registeredUser.getId(), "stale", WorkoutService.MAX_PAGE_SIZE))
+                .thenThrow(new ChangeCursorExpiredException());
+
+        mockMvc.perform(get("/api/workout/changes").param("since", "fresh"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.upserts", hasSize(1)))
+                .andExpect(jsonPath("$.upserts[0].id").value(pastWorkout.getId()))
+                .andExpect(jsonPath("$.deleted[0]").value(42))
+                .andExpect(jsonPath("$.cursor").value("next"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+
+        mockMvc.perform(get("/api/workout/changes").param("since", "stale"))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    @DisplayName("A write sent with an Idempotency-Key answers with the stored response")
+    void createWorkout_ShouldAnswerWithTheStoredResponse() throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(WorkoutView.of(pastWorkout));
+        when(idempotencyService.execute(eq(registeredUser.getId()), eq("retry-1"), eq("create"), any(), any()))
+                .thenReturn(new IdempotencyService.StoredResponse("fingerprint", 201, body, true));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/workout/create")
+                        .header(WorkoutController.IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(pastWorkout)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(WorkoutController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.name").value(pastWorkout.getName()));
+        verify(workoutService, never()).addWorkout(any(), anyLong());
+    }
+}
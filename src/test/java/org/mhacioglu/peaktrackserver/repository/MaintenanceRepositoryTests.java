@@ -0,0 +1,80 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.model.BlacklistedToken;
+import org.mhacioglu.peaktrackserver.model.MaintenanceLease;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+public class MaintenanceRepositoryTests {
+    @Autowired
+    private BlacklistedTokenRepository blacklistedTokenRepository;
+
+    @Autowired
+    private MaintenanceLeaseRepository maintenanceLeaseRepository;
+
+    @DisplayName("Expired blacklist rows are deleted in batches of the given size")
+    @Test
+    void deleteExpiredBatch_ShouldDeleteAtMostLimitRows() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            blacklistedTokenRepository.save(new BlacklistedToken("expired-" + i, now.minus(1, ChronoUnit.HOURS)));
+        }
+        blacklistedTokenRepository.save(new BlacklistedToken("live", now.plus(1, ChronoUnit.HOURS)));
+        blacklistedTokenRepository.flush();
+
+        assertEquals(3, blacklistedTokenRepository.deleteExpiredBatch(now, 3));
+        assertEquals(2, blacklistedTokenRepository.deleteExpiredBatch(now, 3));
+        assertEquals(0, blacklistedTokenRepository.deleteExpiredBatch(now, 3));
+        assertTrue(blacklistedTokenRepository.existsById("live"));
+    }
+
+    @DisplayName("A lease can only be taken once it has expired or by its current owner")
+    @Test
+    void tryAcquire_ShouldRespectUnexpiredLeases() {
+        Instant now = Instant.now();
+        maintenanceLeaseRepository.saveAndFlush(new MaintenanceLease("job", null, now.minusSeconds(1)));
+
+        assertEquals(1, maintenanceLeaseRepository.tryAcquire("job", "node-a", now, now.plusSeconds(60)));
+        assertEquals(0, maintenanceLeaseRepository.tryAcquire("job", "node-b", now, now.plusSeconds(60)));
+        assertEquals(1, maintenanceLeaseRepository.tryAcquire("job", "node-a", now, now.plusSeconds(120)));
+
+        maintenanceLeaseRepository.release("job", "node-a", now.minusSeconds(1));
+        assertEquals(0, maintenanceLeaseRepository.extend("job", "node-a", now.plusSeconds(60)));
+        assertEquals(1, maintenanceLeaseRepository.tryAcquire("job", "node-b", now, now.plusSeconds(60)));
+    }
+
+    @DisplayName("Creating a lease row that exists fails instead of overwriting its holder")
+    @Test
+    void create_ShouldNotOverwriteAnExistingLease() {
+        Instant now = Instant.now();
+        assertEquals(1, maintenanceLeaseRepository.create("job", now.minusSeconds(1)));
+        assertEquals(1, maintenanceLeaseRepository.tryAcquire("job", "node-a", now, now.plusSeconds(60)));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> maintenanceLeaseRepository.create("job", now.minusSeconds(1)));
+        assertEquals(0, maintenanceLeaseRepository.tryAcquire("job", "node-b", now, now.plusSeconds(60)));
+    }
+
+    @DisplayName("Only the holder of a lease can extend it")
+    @Test
+    void extend_ShouldOnlyExtendTheHoldersLease() {
+        Instant now = Instant.now();
+        maintenanceLeaseRepository.saveAndFlush(new MaintenanceLease("job", "node-a", now.plusSeconds(60)));
+
+        assertEquals(0, maintenanceLeaseRepository.extend("job", "node-b", now.plusSeconds(120)));
+        assertEquals(1, maintenanceLeaseRepository.extend("job", "node-a", now.plusSeconds(120)));
+        assertEquals(0, maintenanceLeaseRepository.tryAcquire("job", "node-b",
+                now.plusSeconds(90), now.plusSeconds(150)));
+    }
+}
@@ -0,0 +1,225 @@
+package org.mhacioglu.peaktrackserver.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.WorkoutCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class WorkoutRepositoryTests {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutRepository workoutRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private RegisteredUser testUser;
+    private RegisteredUser otherUser;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        base = LocalDateTime.of(2024, 1, 10, 12, 0);
+        testUser = entityManager.persist(createUser("testuser", "test@example.com"));
+        otherUser = entityManager.persist(createUser("otheruser", "other@example.com"));
+
+        for (int day = 0; day < 5; day++) {
+            entityManager.persist(createWorkout("Workout " + day, base.plusDays(day), testUser));
+        }
+        entityManager.persist(createWorkout("Not mine", base.plusDays(2), otherUser));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("Only the user's workouts inside the window are returned, newest first")
+    @Test
+    void findViewsBetween_ShouldFilterByUserAndWindow() {
+        List<WorkoutView> all = workoutRepository.findViewsBetween(testUser.getId(), null, null, WorkoutField.ALL);
+        assertEquals(5, all.size());
+        assertEquals("Workout 4", all.getFirst().name());
+
+        List<WorkoutView> window = workoutRepository.findViewsBetween(testUser.getId(),
+                base.plusDays(1), base.plusDays(4), WorkoutField.ALL);
+        assertEquals(List.of("Workout 3", "Workout 2"), window.stream().map(WorkoutView::name).toList());
+    }
+
+    @DisplayName("Listing workouts takes a fixed number of statements however many workouts and exercises there are")
+    @Test
+    void listing_ShouldTakeAFixedNumberOfStatements() {
+        Exercise squat = entityManager.persist(createExercise("Squat"));
+        Exercise lunge = entityManager.persist(createExercise("Lunge"));
+        RegisteredUser user = entityManager.find(RegisteredUser.class, testUser.getId());
+        for (int day = 5; day < 25; day++) {
+            Workout workout = createWorkout("Workout " + day, base.plusDays(day), user);
+            workout.setExercises(new ArrayList<>(List.of(squat, lunge)));
+            entityManager.persist(workout);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<WorkoutView> views = workoutRepository.findViewsBetween(testUser.getId(), null, null, WorkoutField.ALL);
+        List<WorkoutExerciseView> exercises = workoutRepository.findExerciseViewsBetween(testUser.getId(), null, null);
+
+        assertEquals(25, views.size());
+        assertEquals("Workout 24", views.getFirst().name());
+        assertEquals(40, exercises.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @DisplayName("Only workouts that have ended are summarized, newest first")
+    @Test
+    void findSummariesEndedBefore_ShouldSkipUnfinishedWorkouts() {
+        // Workout 3 runs from base + 3 days to one hour later.
+        List<WorkoutSummary> summaries = workoutRepository.findSummariesEndedBefore(testUser.getId(),
+                base.plusDays(3).plusMinutes(30), WorkoutSummaryField.ALL);
+
+        assertEquals(List.of("Workout 2", "Workout 1", "Workout 0"),
+                summaries.stream().map(WorkoutSummary::getWorkoutName).toList());
+        assertEquals(Integer.valueOf(60), summaries.getFirst().getWorkoutDuration());
+    }
+
+    @DisplayName("Fields that weren't asked for are left unset")
+    @Test
+    void projections_ShouldOnlySetRequestedFields() {
+        WorkoutView view = workoutRepository.findViewsBetween(testUser.getId(), null, null,
+                EnumSet.of(WorkoutField.NAME)).getFirst();
+        assertEquals(new WorkoutView(view.id(), "Workout 4", null, null, null), view);
+
+        WorkoutSummary summary = workoutRepository.findSummariesEndedBefore(testUser.getId(),
+                base.plusDays(10), EnumSet.of(WorkoutSummaryField.WORKOUT_DURATION)).getFirst();
+        assertNull(summary.getWorkoutName());
+        assertNull(summary.getWorkoutStart());
+        assertEquals(Integer.valueOf(60), summary.getWorkoutDuration());
+    }
+
+    @DisplayName("A workout is not found through another user's id")
+    @Test
+    void findByIdAndUserId_ShouldNotReturnOtherUsersWorkouts() {
+        Long mine = newestWorkoutId(testUser);
+
+        assertTrue(workoutRepository.findByIdAndUserId(mine, testUser.getId()).isPresent());
+        assertTrue(workoutRepository.findByIdAndUserId(mine, otherUser.getId()).isEmpty());
+    }
+
+    @DisplayName("Keyset pages walk the window without gaps or repeats, ties broken by id")
+    @Test
+    void findPageKeys_ShouldContinueAfterTheGivenPosition() {
+        entityManager.persist(createWorkout("Same start", base.plusDays(3), entityManager.find(RegisteredUser.class, testUser.getId())));
+        entityManager.flush();
+
+        List<Long> expected = workoutRepository.findViewsBetween(testUser.getId(), null, null,
+                EnumSet.of(WorkoutField.ID)).stream().map(WorkoutView::id).toList();
+
+        List<WorkoutCursor> firstPage = workoutRepository.findPageKeys(testUser.getId(), null, null, null, null, Limit.of(4));
+        assertEquals(expected.subList(0, 4), firstPage.stream().map(WorkoutCursor::id).toList());
+
+        WorkoutCursor last = firstPage.getLast();
+        assertEquals(workoutRepository.findById(last.id()).orElseThrow().getStart(), last.start());
+        List<WorkoutCursor> secondPage = workoutRepository.findPageKeys(testUser.getId(), null, null,
+                last.start(), last.id(), Limit.of(4));
+        assertEquals(expected.subList(4, 6), secondPage.stream().map(WorkoutCursor::id).toList());
+    }
+
+    @DisplayName("The stored end time follows start and duration on every write")
+    @Test
+    void endTime_ShouldBeKeptInSyncWithStartAndDuration() {
+        Workout workout = workoutRepository.findById(newestWorkoutId(testUser)).orElseThrow();
+        assertEquals(workout.getStart().plusMinutes(60), workout.getEndTime());
+
+        workout.setDurationInMinutes(90);
+        workoutRepository.saveAndFlush(workout);
+
+        assertEquals(workout.getStart().plusMinutes(90), workout.getEndTime());
+    }
+
+    @DisplayName("Overlaps are inclusive at both ends and skip the excluded workout")
+    @Test
+    void findOverlapping_ShouldFindTouchingWorkouts() {
+        // Workout 2 runs from base + 2 days to one hour later.
+        LocalDateTime start = base.plusDays(2);
+        Long userId = testUser.getId();
+
+        List<Workout> touchingEnd = workoutRepository.findOverlapping(userId,
+                start.plusHours(1), start.plusHours(2), null, Limit.of(1));
+        assertEquals("Workout 2", touchingEnd.getFirst().getName());
+
+        List<Workout> touchingStart = workoutRepository.findOverlapping(userId,
+                start.minusHours(1), start, null, Limit.of(1));
+        assertEquals("Workout 2", touchingStart.getFirst().getName());
+
+        assertTrue(workoutRepository.findOverlapping(userId,
+                start.plusHours(1).plusMinutes(1), start.plusHours(3), null, Limit.of(1)).isEmpty());
+        assertTrue(workoutRepository.findOverlapping(userId,
+                start, start.plusMinutes(30), touchingEnd.getFirst().getId(), Limit.of(1)).isEmpty());
+        assertTrue(workoutRepository.findOverlapping(otherUser.getId(),
+                start.minusDays(1), start.minusHours(12), null, Limit.of(1)).isEmpty());
+    }
+
+    private Long newestWorkoutId(RegisteredUser user) {
+        return workoutRepository.findViewsBetween(user.getId(), null, null, EnumSet.of(WorkoutField.ID))
+                .getFirst().id();
+    }
+
+    private static RegisteredUser createUser(String username, String email) {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername(username);
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail(email);
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+
+    private static Exercise createExercise(String name) {
+        return Exercise.builder()
+                .name(name)
+                .category(Exercise.Category.STRENGTH)
+                .muscleGroup(Exercise.MuscleGroup.QUADS)
+                .sets(3)
+                .repetitions(10)
+                .build();
+    }
+
+    private static Workout createWorkout(String name, LocalDateTime start, RegisteredUser user) {
+        return Workout.builder()
+                .name(name)
+                .start(start)
+                .durationInMinutes(60)
+                .user(user)
+                .build();
+    }
+}
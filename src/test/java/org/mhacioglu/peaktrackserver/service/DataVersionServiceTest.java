@@ -0,0 +1,81 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DataVersionServiceTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private DataVersionService dataVersionService;
+    private RegisteredUser user;
+
+    @BeforeEach
+    public void setUp() {
+        dataVersionService = new DataVersionService(userRepository, 100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        user = new RegisteredUser();
+        user.setId(1L);
+        user.setDataVersion(4);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @DisplayName("A bump is visible to this node once the transaction commits")
+    public void bump_ShouldBeVisibleAfterCommit() {
+        when(userRepository.findDataVersionById(1L)).thenReturn(Optional.of(4L));
+        assertEquals(4, dataVersionService.currentVersion(1L));
+
+        dataVersionService.bump(user);
+        assertEquals(5, user.getDataVersion());
+        assertEquals(4, dataVersionService.currentVersion(1L));
+        assertFalse(dataVersionService.wroteRecently(1L));
+
+        commit();
+        assertEquals(5, dataVersionService.currentVersion(1L));
+        assertEquals(5L, dataVersionService.knownVersion(1L));
+        assertTrue(dataVersionService.wroteRecently(1L));
+        verify(userRepository, times(1)).findDataVersionById(1L);
+    }
+
+    @Test
+    @DisplayName("A late commit callback never moves the cached version backwards")
+    public void bump_ShouldNotGoBackwards() {
+        dataVersionService.bump(user);
+        List<TransactionSynchronization> first = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        dataVersionService.bump(user);
+
+        commit();
+        first.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(6, dataVersionService.currentVersion(1L));
+        verify(userRepository, never()).findDataVersionById(1L);
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -0,0 +1,143 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.exceptions.IdempotencyKeyReusedException;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutTimeConflictException;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({IdempotencyService.class, WorkoutService.class, WorkoutRollupService.class, WorkoutChangeLog.class,
+        DataVersionService.class, UserLockService.class, WorkoutArchiveService.class,
+        SimpleMeterRegistry.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class IdempotencyServiceTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private WorkoutService workoutService;
+
+    @Autowired
+    private WorkoutRepository workoutRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private RegisteredUser testUser;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        testUser = entityManager.persist(createUser());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("A retried create returns the first response without creating another workout")
+    @Test
+    void execute_ShouldReplayTheFirstResponse() throws Exception {
+        Workout request = workout("Morning");
+
+        IdempotencyService.StoredResponse first = idempotencyService.execute(testUser.getId(), "key-1", "create",
+                request, create(request));
+        IdempotencyService.StoredResponse retry = idempotencyService.execute(testUser.getId(), "key-1", "create",
+                workout("Morning"), create(workout("Morning")));
+
+        assertEquals(1, runs.get());
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(HttpStatus.CREATED.value(), retry.status());
+        assertArrayEquals(first.body(), retry.body());
+        WorkoutView created = objectMapper.readValue(retry.body(), WorkoutView.class);
+        assertEquals("Morning", created.name());
+        assertEquals(1, workoutRepository.findViewsBetween(testUser.getId(), null, null, WorkoutField.ALL).size());
+    }
+
+    @DisplayName("A key used for one request can't be used for another")
+    @Test
+    void execute_ShouldRejectAKeyReusedForAnotherRequest() {
+        idempotencyService.execute(testUser.getId(), "key-1", "create", workout("Morning"), create(workout("Morning")));
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyService.execute(testUser.getId(),
+                "key-1", "create", workout("Evening"), create(workout("Evening"))));
+        assertThrows(IdempotencyKeyReusedException.class, () -> idempotencyService.execute(testUser.getId(),
+                "key-1", "update", workout("Morning"), create(workout("Morning"))));
+        assertEquals(1, runs.get());
+    }
+
+    @DisplayName("A failed request stores nothing and can be retried with the same key")
+    @Test
+    void execute_ShouldNotStoreFailures() {
+        workoutService.addWorkout(workout("Stored"), testUser.getId());
+        Workout overlapping = workout("Overlapping");
+
+        assertThrows(WorkoutTimeConflictException.class, () -> idempotencyService.execute(testUser.getId(),
+                "key-1", "create", overlapping, create(overlapping)));
+        Workout moved = workout("Overlapping");
+        moved.setStart(moved.getStart().plusHours(3));
+        IdempotencyService.StoredResponse response = idempotencyService.execute(testUser.getId(), "key-1",
+                "create", moved, create(moved));
+
+        assertEquals(2, runs.get());
+        assertFalse(response.replayed());
+    }
+
+    private Supplier<ResponseEntity<?>> create(Workout workout) {
+        return () -> {
+            runs.incrementAndGet();
+            return new ResponseEntity<>(WorkoutView.of(workoutService.addWorkout(workout, testUser.getId())),
+                    HttpStatus.CREATED);
+        };
+    }
+
+    private static Workout workout(String name) {
+        return Workout.builder()
+                .name(name)
+                .start(LocalDateTime.of(2024, 1, 10, 8, 0))
+                .durationInMinutes(60)
+                .exercises(new ArrayList<>())
+                .build();
+    }
+
+    private static RegisteredUser createUser() {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername("testuser");
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail("test@example.com");
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+}
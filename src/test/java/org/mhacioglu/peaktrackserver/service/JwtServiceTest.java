@@ -0,0 +1,143 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.VerifiedToken;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class JwtServiceTest {
+    private static final String SECRET_KEY = "c2VjcmV0LWtleS1mb3ItcGVha3RyYWNrLXRlc3RzLW9ubHktMzJi";
+
+    @Mock
+    private TokenRevocationStore tokenRevocationStore;
+
+    @Mock
+    private TokenEpochService tokenEpochService;
+
+    private JwtService jwtService;
+    private RegisteredUser registeredUser;
+
+    @BeforeEach
+    public void setUp() {
+        jwtService = new JwtService(tokenRevocationStore, tokenEpochService);
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheSize", 100L);
+        jwtService.init();
+
+        registeredUser = new RegisteredUser();
+        registeredUser.setUsername("testuser");
+    }
+
+    @Test
+    @DisplayName("Verifying the same token twice returns the cached result")
+    public void verify_ShouldReturnCachedTokenOnSecondCall() {
+        String token = jwtService.generateToken(registeredUser);
+
+        VerifiedToken first = jwtService.verify(token);
+        VerifiedToken second = jwtService.verify(token);
+
+        assertEquals("testuser", first.username());
+        assertFalse(first.isExpired());
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("A token signed with another key is rejected")
+    public void verify_ShouldRejectTokenWithForeignSignature() {
+        JwtService otherService = new JwtService(tokenRevocationStore, tokenEpochService);
+        ReflectionTestUtils.setField(otherService, "secretKey",
+                "b3RoZXItc2VjcmV0LWtleS1mb3ItcGVha3RyYWNrLXRlc3RzLTMyYg==");
+        ReflectionTestUtils.setField(otherService, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(otherService, "verifiedCacheSize", 100L);
+        otherService.init();
+
+        String foreignToken = otherService.generateToken(registeredUser);
+
+        assertThrows(SignatureException.class, () -> jwtService.verify(foreignToken));
+    }
+
+    @Test
+    @DisplayName("An expired token is rejected")
+    public void verify_ShouldRejectExpiredToken() {
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", -1_000L);
+        String token = jwtService.generateToken(new HashMap<>(), registeredUser);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    @DisplayName("Blacklisting a token records its digest and expiry in the revocation store")
+    public void blacklistToken_ShouldRevokeTokenInStore() {
+        String token = jwtService.generateToken(registeredUser);
+        VerifiedToken verifiedToken = jwtService.verify(token);
+
+        jwtService.blacklistToken(token);
+
+        verify(tokenRevocationStore, times(1))
+                .revoke(verifiedToken.digest(), verifiedToken.expiresAt());
+    }
+
+    @Test
+    @DisplayName("A verified token is valid for its subject unless it is blacklisted")
+    public void isTokenValid_ShouldCheckBlacklist() {
+        String token = jwtService.generateToken(registeredUser);
+        VerifiedToken verifiedToken = jwtService.verify(token);
+
+        assertEquals("testuser", verifiedToken.username());
+        when(tokenEpochService.currentEpoch("testuser")).thenReturn(0L);
+        when(tokenRevocationStore.isRevoked(verifiedToken.digest())).thenReturn(false, true);
+
+        assertTrue(jwtService.isTokenValid(verifiedToken));
+        assertFalse(jwtService.isTokenValid(verifiedToken));
+    }
+
+    @Test
+    @DisplayName("Tokens issued before the user's epoch was bumped are no longer valid")
+    public void isTokenValid_ShouldRejectTokensFromAnOlderEpoch() {
+        registeredUser.setTokenEpoch(3);
+        String token = jwtService.generateToken(registeredUser);
+        VerifiedToken verifiedToken = jwtService.verify(token);
+
+        assertEquals(3, verifiedToken.epoch());
+
+        when(tokenEpochService.currentEpoch("testuser")).thenReturn(4L);
+
+        assertFalse(jwtService.isTokenValid(verifiedToken));
+        verify(tokenRevocationStore, never()).isRevoked(any(String.class));
+    }
+
+    @Test
+    @DisplayName("Logging out everywhere bumps the epoch of the token owner")
+    public void revokeAllTokens_ShouldBumpEpochOfTokenOwner() {
+        String token = jwtService.generateToken(registeredUser);
+
+        jwtService.revokeAllTokens(token);
+
+        verify(tokenEpochService, times(1)).revokeAllTokens("testuser");
+    }
+
+    @Test
+    @DisplayName("Tokens carry the user id so the principal can be built without a lookup")
+    public void verify_ShouldExposeUserIdClaim() {
+        registeredUser.setId(42L);
+
+        VerifiedToken verifiedToken = jwtService.verify(jwtService.generateToken(registeredUser));
+
+        assertEquals(42L, verifiedToken.userId());
+    }
+}
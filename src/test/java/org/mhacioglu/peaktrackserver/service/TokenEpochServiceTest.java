@@ -0,0 +1,54 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenEpochServiceTest {
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserService userService;
+
+    private TokenEpochService tokenEpochService;
+
+    @BeforeEach
+    public void setUp() {
+        tokenEpochService = new TokenEpochService(userRepository, userService, 100, Duration.ofMinutes(1));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @DisplayName("A read before the bump commits can't keep the old epoch cached")
+    public void revokeAllTokens_ShouldInvalidateAfterCommit() {
+        when(userRepository.findTokenEpochByUsername("testuser")).thenReturn(Optional.of(3L), Optional.of(4L));
+
+        tokenEpochService.revokeAllTokens("testuser");
+        // Another request reads the epoch before the increment is visible.
+        assertEquals(3, tokenEpochService.currentEpoch("testuser"));
+        verify(userService, never()).evict("testuser");
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(4, tokenEpochService.currentEpoch("testuser"));
+        verify(userService, times(1)).evict("testuser");
+    }
+}
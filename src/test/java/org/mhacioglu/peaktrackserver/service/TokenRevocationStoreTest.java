@@ -0,0 +1,99 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.model.BlacklistedToken;
+import org.mhacioglu.peaktrackserver.repository.BlacklistedTokenRepository;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationStoreTest {
+    @Mock
+    private BlacklistedTokenRepository blacklistedTokenRepository;
+
+    private TokenRevocationStore tokenRevocationStore;
+
+    @BeforeEach
+    public void setUp() {
+        tokenRevocationStore = new TokenRevocationStore(blacklistedTokenRepository, 1000);
+    }
+
+    @Test
+    @DisplayName("Unknown tokens are reported as not revoked without a database lookup")
+    public void isRevoked_ShouldNotQueryDatabaseForUnknownToken() {
+        String token = "header.payload.signature";
+
+        assertFalse(tokenRevocationStore.isRevoked(JwtService.digest(token)));
+        verify(blacklistedTokenRepository, never()).existsById(any(String.class));
+    }
+
+    @Test
+    @DisplayName("A revoked token is written through to the table and answered from memory")
+    public void revoke_ShouldWriteThroughAndAnswerFromMemory() {
+        String token = "header.payload.signature";
+        String digest = JwtService.digest(token);
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+
+        tokenRevocationStore.revoke(digest, expiresAt);
+
+        assertTrue(tokenRevocationStore.isRevoked(digest));
+        verify(blacklistedTokenRepository, times(1)).save(argThat(row ->
+                row.getTokenDigest().equals(digest) && row.getExpiryDate().equals(expiresAt)));
+        verify(blacklistedTokenRepository, never()).existsById(any(String.class));
+    }
+
+    @Test
+    @DisplayName("Rebuilding loads the live revocations from the table")
+    public void rebuild_ShouldLoadLiveRevocations() {
+        String revoked = "revoked.token.signature";
+        String other = "other.token.signature";
+        when(blacklistedTokenRepository.findByExpiryDateAfter(any(Instant.class)))
+                .thenReturn(List.of(new BlacklistedToken(JwtService.digest(revoked),
+                        Instant.now().plus(1, ChronoUnit.HOURS))));
+
+        tokenRevocationStore.rebuild();
+
+        assertTrue(tokenRevocationStore.isRevoked(JwtService.digest(revoked)));
+        assertFalse(tokenRevocationStore.isRevoked(JwtService.digest(other)));
+    }
+
+    @Test
+    @DisplayName("A token revoked while a rebuild is running stays revoked after the rebuild")
+    public void revoke_DuringRebuild_ShouldNotBeLost() {
+        String digest = JwtService.digest("revoked.during.rebuild");
+        // The revocation lands after the rebuild's snapshot was read and before its filter is swapped in.
+        when(blacklistedTokenRepository.findByExpiryDateAfter(any(Instant.class))).thenAnswer(invocation -> {
+            tokenRevocationStore.revoke(digest, Instant.now().plus(1, ChronoUnit.HOURS));
+            return List.of();
+        });
+
+        tokenRevocationStore.rebuild();
+
+        assertTrue(tokenRevocationStore.isRevoked(digest));
+    }
+
+    @Test
+    @DisplayName("Polling picks up tokens revoked on other nodes")
+    public void pollRevocations_ShouldAddRevocationsMadeElsewhere() {
+        String digest = JwtService.digest("revoked.on.another.node");
+        assertFalse(tokenRevocationStore.isRevoked(digest));
+        when(blacklistedTokenRepository.findByRevokedAtAfterAndExpiryDateAfter(any(Instant.class), any(Instant.class)))
+                .thenReturn(List.of(new BlacklistedToken(digest, Instant.now().plus(1, ChronoUnit.HOURS))));
+
+        tokenRevocationStore.pollRevocations();
+
+        assertTrue(tokenRevocationStore.isRevoked(digest));
+        verify(blacklistedTokenRepository, never()).existsById(any(String.class));
+    }
+}
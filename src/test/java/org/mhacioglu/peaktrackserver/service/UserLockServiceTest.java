@@ -0,0 +1,54 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UserLockServiceTest {
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserLockService userLockService;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userLockService = new UserLockService(userRepository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Locking returns the locked user and records the wait per operation")
+    public void lockForWrite_ShouldRecordWaitTime() {
+        RegisteredUser user = new RegisteredUser();
+        user.setId(1L);
+        when(userRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(user));
+
+        assertSame(user, userLockService.lockForWrite(1L, "create"));
+        assertSame(user, userLockService.lockForWrite(1L, "create"));
+
+        assertEquals(2, meterRegistry.get("peaktrack.user.lock.wait").tag("operation", "create").timer().count());
+    }
+
+    @Test
+    @DisplayName("Locking an unknown user fails and still records the attempt")
+    public void lockForWrite_ShouldRejectUnknownUser() {
+        when(userRepository.findByIdForUpdate(2L)).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userLockService.lockForWrite(2L, "update"));
+        assertEquals(1, meterRegistry.get("peaktrack.user.lock.wait").tag("operation", "update").timer().count());
+    }
+}
@@ -0,0 +1,190 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.ExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPage;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutTimeConflictException;
+import org.mhacioglu.peaktrackserver.model.ArchivedWorkout;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
+import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({WorkoutArchiveService.class, WorkoutService.class, WorkoutRollupService.class, WorkoutChangeLog.class,
+        DataVersionService.class, UserLockService.class, SimpleMeterRegistry.class})
+public class WorkoutArchiveServiceTest {
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutArchiveService workoutArchiveService;
+
+    @Autowired
+    private WorkoutService workoutService;
+
+    @Autowired
+    private WorkoutRepository workoutRepository;
+
+    @Autowired
+    private ArchivedWorkoutRepository archivedWorkoutRepository;
+
+    private RegisteredUser testUser;
+    private Exercise squat;
+    private Workout oldest;
+    private Workout old;
+    private Workout recent;
+
+    @BeforeEach
+    void setUp() {
+        testUser = entityManager.persist(createUser());
+        squat = entityManager.persist(Exercise.builder()
+                .name("Squat")
+                .category(Exercise.Category.STRENGTH)
+                .muscleGroup(Exercise.MuscleGroup.QUADS)
+                .sets(3)
+                .repetitions(10)
+                .build());
+        oldest = entityManager.persist(workout("Oldest", LocalDateTime.of(2023, 1, 10, 8, 0), List.of(squat)));
+        old = entityManager.persist(workout("Old", LocalDateTime.of(2023, 6, 10, 8, 0), List.of()));
+        recent = entityManager.persist(workout("Recent", LocalDateTime.of(2024, 3, 10, 8, 0), List.of()));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("Archiving moves the workouts that ended before the cutoff a batch at a time")
+    @Test
+    void archiveBatch_ShouldMoveOnlyWorkoutsThatEndedBeforeTheCutoff() {
+        assertNull(workoutArchiveService.archivedUntil(testUser.getId()));
+
+        assertEquals(1, workoutArchiveService.archiveBatch(testUser.getId(), CUTOFF, 1));
+        assertEquals(1, workoutArchiveService.archiveBatch(testUser.getId(), CUTOFF, 1));
+        assertEquals(0, workoutArchiveService.archiveBatch(testUser.getId(), CUTOFF, 1));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(List.of(recent.getId()), workoutRepository.findAll().stream().map(Workout::getId).toList());
+        assertEquals(2, archivedWorkoutRepository.count());
+        assertEquals(CUTOFF, workoutArchiveService.archivedUntil(testUser.getId()));
+    }
+
+    @DisplayName("Reads return archived workouts together with live ones")
+    @Test
+    void reads_ShouldIncludeArchivedWorkouts() {
+        archiveAll();
+
+        List<WorkoutView> all = workoutService.getWorkoutsBetween(null, null, testUser.getId(), WorkoutField.ALL);
+        assertEquals(List.of(recent.getId(), old.getId(), oldest.getId()), all.stream().map(WorkoutView::id).toList());
+        assertEquals(List.of(squat.getId()), all.getLast().exercises().stream().map(ExerciseView::id).toList());
+        assertEquals(List.of(recent.getId()), workoutService.getWorkoutsBetween(CUTOFF, null, testUser.getId(),
+                WorkoutField.ALL).stream().map(WorkoutView::id).toList(), "the range doesn't reach the archive");
+
+        WorkoutPage first = workoutService.getWorkoutPage(null, null, testUser.getId(), 2, null, WorkoutField.ALL);
+        assertEquals(List.of(recent.getId(), old.getId()), first.workouts().stream().map(WorkoutView::id).toList());
+        WorkoutPage second = workoutService.getWorkoutPage(null, null, testUser.getId(), 2, first.nextCursor(),
+                WorkoutField.ALL);
+        assertEquals(List.of(oldest.getId()), second.workouts().stream().map(WorkoutView::id).toList());
+        assertNull(second.nextCursor());
+
+        assertEquals(3, workoutService.listAllPastWorkouts(testUser.getId(), WorkoutSummaryField.ALL).size());
+    }
+
+    @DisplayName("Live and archived workouts are merged newest first even when start isn't read")
+    @Test
+    void reads_ShouldOrderMergedWorkoutsWithoutStart() {
+        archiveAll();
+        Workout older = entityManager.persist(workout("Older", LocalDateTime.of(2022, 6, 10, 8, 0), List.of()));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<WorkoutView> all = workoutService.getWorkoutsBetween(null, null, testUser.getId(),
+                EnumSet.of(WorkoutField.NAME));
+        assertEquals(List.of(recent.getId(), old.getId(), oldest.getId(), older.getId()),
+                all.stream().map(WorkoutView::id).toList());
+        assertTrue(all.stream().allMatch(view -> view.start() == null));
+
+        List<WorkoutSummary> summaries = workoutService.listAllPastWorkouts(testUser.getId(),
+                EnumSet.of(WorkoutSummaryField.WORKOUT_NAME));
+        assertEquals(List.of("Recent", "Old", "Oldest", "Older"),
+                summaries.stream().map(WorkoutSummary::getWorkoutName).toList());
+        assertTrue(summaries.stream().allMatch(summary -> summary.getWorkoutStart() == null));
+    }
+
+    @DisplayName("Updating an archived workout moves it back to the live table with its exercises")
+    @Test
+    void updateWorkout_ShouldRestoreAnArchivedWorkout() {
+        archiveAll();
+
+        workoutService.updateWorkout(Workout.builder().id(oldest.getId()).name("Renamed").build(), testUser.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        Workout restored = workoutRepository.findByIdAndUserId(oldest.getId(), testUser.getId()).orElseThrow();
+        assertEquals("Renamed", restored.getName());
+        assertEquals(List.of(squat.getId()), restored.getExercises().stream().map(Exercise::getId).toList());
+        assertEquals(List.of(old.getId()),
+                archivedWorkoutRepository.findAll().stream().map(ArchivedWorkout::getId).toList());
+    }
+
+    @DisplayName("A new workout that overlaps an archived one is rejected")
+    @Test
+    void addWorkout_ShouldConflictWithArchivedWorkouts() {
+        archiveAll();
+
+        assertThrows(WorkoutTimeConflictException.class, () -> workoutService.addWorkout(
+                workout("Overlapping", old.getStart().plusMinutes(30), List.of()), testUser.getId()));
+    }
+
+    private void archiveAll() {
+        assertEquals(2, workoutArchiveService.archiveBatch(testUser.getId(), CUTOFF, 500));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private Workout workout(String name, LocalDateTime start, List<Exercise> exercises) {
+        return Workout.builder()
+                .name(name)
+                .start(start)
+                .durationInMinutes(60)
+                .exercises(new ArrayList<>(exercises))
+                .user(testUser)
+                .build();
+    }
+
+    private static RegisteredUser createUser() {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername("testuser");
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail("test@example.com");
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+}
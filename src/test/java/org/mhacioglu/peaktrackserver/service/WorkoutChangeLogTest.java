@@ -0,0 +1,135 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChanges;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.exceptions.ChangeCursorExpiredException;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.repository.WorkoutChangeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({WorkoutService.class, WorkoutRollupService.class, WorkoutChangeLog.class,
+        DataVersionService.class, UserLockService.class, WorkoutArchiveService.class, SimpleMeterRegistry.class})
+public class WorkoutChangeLogTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutService workoutService;
+
+    @Autowired
+    private WorkoutChangeRepository workoutChangeRepository;
+
+    private RegisteredUser testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = entityManager.persist(createUser());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("Changes after a cursor carry each workout once, in its current state")
+    @Test
+    void getChanges_ShouldReturnUpsertsAndTombstonesAfterTheCursor() {
+        Workout kept = workoutService.addWorkout(workout("Kept", LocalDateTime.of(2024, 1, 10, 8, 0)), testUser.getId());
+        String cursor = workoutService.getChanges(testUser.getId(), null, 500).cursor();
+
+        Workout dropped = workoutService.addWorkout(workout("Dropped", LocalDateTime.of(2024, 1, 11, 8, 0)), testUser.getId());
+        workoutService.updateWorkout(Workout.builder().id(kept.getId()).name("Renamed").build(), testUser.getId());
+        workoutService.updateWorkout(Workout.builder().id(kept.getId()).durationInMinutes(45).build(), testUser.getId());
+        workoutService.deleteWorkout(dropped.getId(), testUser.getId());
+        entityManager.flush();
+
+        WorkoutChanges changes = workoutService.getChanges(testUser.getId(), cursor, 500);
+        assertEquals(List.of(kept.getId()), changes.upserts().stream().map(WorkoutView::id).toList());
+        assertEquals("Renamed", changes.upserts().getFirst().name());
+        assertEquals(45, changes.upserts().getFirst().durationInMinutes());
+        assertEquals(List.of(), changes.upserts().getFirst().exercises());
+        assertEquals(List.of(dropped.getId()), changes.deleted());
+        assertFalse(changes.hasMore());
+
+        WorkoutChanges none = workoutService.getChanges(testUser.getId(), changes.cursor(), 500);
+        assertTrue(none.upserts().isEmpty());
+        assertTrue(none.deleted().isEmpty());
+        assertEquals(changes.cursor(), none.cursor());
+    }
+
+    @DisplayName("Long change lists are paged without splitting the changes of one write")
+    @Test
+    void getChanges_ShouldPageAtWriteBoundaries() {
+        String cursor = workoutService.getChanges(testUser.getId(), null, 500).cursor();
+        List<WorkoutBatchOperation> operations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            operations.add(WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE)
+                    .workout(workout("Batch " + i, LocalDateTime.of(2024, 2, 1 + i, 8, 0))).build());
+        }
+        workoutService.applyBatch(operations, testUser.getId());
+        workoutService.addWorkout(workout("Single", LocalDateTime.of(2024, 3, 1, 8, 0)), testUser.getId());
+        entityManager.flush();
+
+        WorkoutChanges first = workoutService.getChanges(testUser.getId(), cursor, 2);
+        assertEquals(3, first.upserts().size());
+        assertTrue(first.hasMore());
+
+        WorkoutChanges second = workoutService.getChanges(testUser.getId(), first.cursor(), 2);
+        assertEquals(List.of("Single"), second.upserts().stream().map(WorkoutView::name).toList());
+        assertFalse(second.hasMore());
+    }
+
+    @DisplayName("A cursor from before compacted changes is rejected")
+    @Test
+    void getChanges_ShouldRejectCursorsBeforeCompactedChanges() {
+        // A new user starts at version 0.
+        String cursor = new WorkoutChangeCursor(0).encode();
+        workoutService.addWorkout(workout("First", LocalDateTime.of(2024, 1, 10, 8, 0)), testUser.getId());
+        entityManager.flush();
+        String current = workoutService.getChanges(testUser.getId(), cursor, 500).cursor();
+
+        workoutChangeRepository.deleteOlderThanBatch(LocalDateTime.now().plusMinutes(1), 1000);
+
+        assertThrows(ChangeCursorExpiredException.class, () -> workoutService.getChanges(testUser.getId(), cursor, 500));
+        assertTrue(workoutService.getChanges(testUser.getId(), current, 500).upserts().isEmpty());
+    }
+
+    private static Workout workout(String name, LocalDateTime start) {
+        return Workout.builder()
+                .name(name)
+                .start(start)
+                .durationInMinutes(60)
+                .exercises(new ArrayList<>())
+                .build();
+    }
+
+    private static RegisteredUser createUser() {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername("testuser");
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail("test@example.com");
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+}
@@ -0,0 +1,99 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkoutEventBroadcasterTest {
+    private SimpleMeterRegistry meterRegistry;
+    private WorkoutEventBroadcaster broadcaster;
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        broadcaster = new WorkoutEventBroadcaster(meterRegistry, 2, Duration.ofMillis(200), Duration.ofMinutes(1));
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @DisplayName("Events reach the streams of their user, and quiet streams get heartbeats")
+    @Test
+    void publish_ShouldReachTheUsersStreams() throws Exception {
+        CapturingEmitter mine = new CapturingEmitter(false);
+        CapturingEmitter theirs = new CapturingEmitter(false);
+        broadcaster.subscribe(1L, mine);
+        broadcaster.subscribe(2L, theirs);
+
+        broadcaster.publish(1L, new WorkoutChangeEvent("v7", List.of(10L), List.of(11L)));
+
+        String frame = mine.frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertTrue(frame.startsWith("id:v7\nevent:" + WorkoutEventBroadcaster.EVENT_NAME + "\ndata:"), frame);
+        assertTrue(frame.contains("upserted=[10], deleted=[11]"), frame);
+        assertEquals(":heartbeat\n\n", mine.frames.poll(5, TimeUnit.SECONDS));
+        assertEquals(":heartbeat\n\n", theirs.frames.poll(5, TimeUnit.SECONDS));
+        assertEquals(2, broadcaster.connectionCount());
+    }
+
+    @DisplayName("A stream that falls behind is closed without holding up the others")
+    @Test
+    void publish_ShouldDropSlowStreams() throws Exception {
+        CapturingEmitter slow = new CapturingEmitter(true);
+        CapturingEmitter fast = new CapturingEmitter(false);
+        broadcaster.subscribe(1L, slow);
+        broadcaster.subscribe(1L, fast);
+
+        // One event in flight and two buffered fill the slow stream.
+        for (int i = 1; i <= 4; i++) {
+            broadcaster.publish(1L, new WorkoutChangeEvent("v" + i, List.of((long) i), List.of()));
+            assertNotNull(fast.frames.poll(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, broadcaster.connectionCount());
+        assertEquals(1, meterRegistry.get("peaktrack.events.dropped").counter().count());
+        broadcaster.publish(1L, new WorkoutChangeEvent("v5", List.of(5L), List.of()));
+        assertTrue(fast.frames.poll(5, TimeUnit.SECONDS).startsWith("id:v5\n"));
+    }
+
+    private class CapturingEmitter extends SseEmitter {
+        private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        private final boolean blocked;
+
+        private CapturingEmitter(boolean blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (blocked) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            StringBuilder frame = new StringBuilder();
+            builder.build().forEach(part -> frame.append(part.getData()));
+            frames.add(frame.toString());
+        }
+    }
+}
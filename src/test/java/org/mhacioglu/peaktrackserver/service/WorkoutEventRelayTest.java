@@ -0,0 +1,80 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutChangeEvent;
+import org.mhacioglu.peaktrackserver.exceptions.ChangeCursorExpiredException;
+import org.mhacioglu.peaktrackserver.repository.UserRepository;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WorkoutEventRelayTest {
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private WorkoutEventBroadcaster workoutEventBroadcaster;
+    @Mock
+    private WorkoutChangeLog workoutChangeLog;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private WorkoutEventRelay workoutEventRelay;
+
+    @BeforeEach
+    public void setUp() {
+        workoutEventRelay = new WorkoutEventRelay(workoutEventBroadcaster, workoutChangeLog, userRepository,
+                transactionManager);
+        when(userRepository.findDataVersionById(USER_ID)).thenReturn(Optional.of(4L));
+        workoutEventRelay.subscribe(USER_ID);
+        when(workoutEventBroadcaster.subscribedUsers()).thenReturn(Set.of(USER_ID));
+    }
+
+    @DisplayName("Writes committed on any node after a stream opened are announced on it once, in order")
+    @Test
+    void poll_ShouldAnnounceNewVersionsOnce() {
+        when(userRepository.findDataVersionsByIdIn(List.of(USER_ID)))
+                .thenReturn(List.<Object[]>of(new Object[]{USER_ID, 4L}))
+                .thenReturn(List.<Object[]>of(new Object[]{USER_ID, 6L}));
+        when(workoutChangeLog.readAfter(USER_ID, 4L, WorkoutService.MAX_PAGE_SIZE))
+                .thenReturn(new WorkoutChangeLog.Changes(List.of(10L), List.of(11L), 6L, false));
+
+        workoutEventRelay.poll();
+        verify(workoutChangeLog, never()).readAfter(anyLong(), anyLong(), anyInt());
+
+        workoutEventRelay.poll();
+        workoutEventRelay.poll();
+        verify(workoutEventBroadcaster, times(1)).publish(USER_ID,
+                new WorkoutChangeEvent(new WorkoutChangeCursor(6L).encode(), List.of(10L), List.of(11L)));
+        verify(workoutChangeLog, times(1)).readAfter(anyLong(), anyLong(), anyInt());
+    }
+
+    @DisplayName("Streams whose pending changes were compacted away are closed so their clients resync")
+    @Test
+    void poll_ShouldCloseStreamsThatCannotCatchUp() {
+        when(userRepository.findDataVersionsByIdIn(List.of(USER_ID)))
+                .thenReturn(List.<Object[]>of(new Object[]{USER_ID, 9L}));
+        when(workoutChangeLog.readAfter(USER_ID, 4L, WorkoutService.MAX_PAGE_SIZE))
+                .thenThrow(new ChangeCursorExpiredException());
+
+        workoutEventRelay.poll();
+
+        verify(workoutEventBroadcaster).close(USER_ID);
+        verify(workoutEventBroadcaster, never()).publish(any(), any());
+    }
+}
@@ -0,0 +1,177 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.exceptions.TooManyExportsException;
+import org.mhacioglu.peaktrackserver.model.ArchivedWorkout;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest(properties = "peaktrack.export.max-concurrent=1")
+@Import({WorkoutExportService.class, WorkoutFileCodec.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class WorkoutExportServiceTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutExportService workoutExportService;
+
+    private RegisteredUser testUser;
+    private Exercise squat;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 10, 12, 0);
+        testUser = entityManager.persist(createUser("testuser", "test@example.com"));
+        RegisteredUser otherUser = entityManager.persist(createUser("otheruser", "other@example.com"));
+        squat = entityManager.persist(Exercise.builder()
+                .name("Squat")
+                .category(Exercise.Category.STRENGTH)
+                .muscleGroup(Exercise.MuscleGroup.QUADS)
+                .sets(3)
+                .repetitions(10)
+                .build());
+
+        entityManager.persist(createWorkout("Later", base.plusDays(1), testUser, List.of()));
+        entityManager.persist(createWorkout("Earlier, \"heavy\"", base, testUser, List.of(squat)));
+        entityManager.persist(createWorkout("Not mine", base, otherUser, List.of()));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("NDJSON export writes one line per workout of the user, oldest first")
+    @Test
+    void export_ShouldWriteNdjsonOldestFirst() throws Exception {
+        String[] lines = export(ExportFormat.NDJSON).split("\n");
+
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"Earlier, \\\"heavy\\\"\""));
+        assertTrue(lines[0].contains("\"start\":\"2024-01-10T12:00:00\""));
+        assertTrue(lines[0].contains("\"exerciseIds\":[" + squat.getId() + "]"));
+        assertTrue(lines[1].contains("\"name\":\"Later\""));
+        assertTrue(lines[1].contains("\"exerciseIds\":[]"));
+    }
+
+    @DisplayName("Archived workouts are merged into the live ones in start order")
+    @Test
+    void export_ShouldMergeArchivedWorkoutsOldestFirst() throws Exception {
+        ArchivedWorkout archived = new ArchivedWorkout();
+        archived.setId(1_000_000L);
+        archived.setUser(testUser);
+        archived.setName("Archived");
+        archived.setStart(LocalDateTime.of(2024, 1, 10, 18, 0));
+        archived.setDurationInMinutes(60);
+        archived.setEndTime(archived.getStart().plusMinutes(60));
+        archived.setExercises(List.of(squat));
+        archived.setArchivedAt(LocalDateTime.of(2024, 6, 1, 0, 0));
+        entityManager.persist(archived);
+        entityManager.flush();
+        entityManager.clear();
+
+        String[] lines = export(ExportFormat.NDJSON).split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"name\":\"Earlier, \\\"heavy\\\"\""));
+        assertTrue(lines[1].contains("\"name\":\"Archived\""));
+        assertTrue(lines[1].contains("\"exerciseIds\":[" + squat.getId() + "]"));
+        assertTrue(lines[2].contains("\"name\":\"Later\""));
+    }
+
+    @DisplayName("CSV export starts with a header row and quotes values where needed")
+    @Test
+    void export_ShouldWriteCsvWithHeader() throws Exception {
+        String[] lines = export(ExportFormat.CSV).split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("id,name,start,durationInMinutes,comment,exerciseIds", lines[0]);
+        assertTrue(lines[1].contains(",\"Earlier, \"\"heavy\"\"\",2024-01-10T12:00:00,60,," + squat.getId()));
+        assertTrue(lines[2].contains(",Later,2024-01-11T12:00:00,60,,"));
+    }
+
+    @DisplayName("An export is rejected while the node is already running its maximum")
+    @Test
+    void openExport_ShouldRejectWhenNoSlotIsFree() throws Exception {
+        StreamingResponseBody running = workoutExportService.openExport(testUser.getId(), ExportFormat.NDJSON);
+
+        assertThrows(TooManyExportsException.class,
+                () -> workoutExportService.openExport(testUser.getId(), ExportFormat.NDJSON));
+
+        running.writeTo(new ByteArrayOutputStream());
+        assertFalse(export(ExportFormat.CSV).isEmpty());
+    }
+
+    @DisplayName("The slot is released when the request ends without the export body having run")
+    @Test
+    void openExport_ShouldReleaseTheSlotWhenTheBodyNeverRuns() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            workoutExportService.openExport(testUser.getId(), ExportFormat.NDJSON);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        assertThrows(TooManyExportsException.class,
+                () -> workoutExportService.openExport(testUser.getId(), ExportFormat.NDJSON));
+
+        // What the container triggers once the request times out, fails or is abandoned.
+        WebAsyncUtils.getAsyncManager(request).getCallableInterceptor(WorkoutExportService.RELEASE_INTERCEPTOR_KEY)
+                .afterCompletion(new ServletWebRequest(request), () -> null);
+
+        assertFalse(export(ExportFormat.CSV).isEmpty());
+    }
+
+    private String export(ExportFormat format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workoutExportService.openExport(testUser.getId(), format).writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static RegisteredUser createUser(String username, String email) {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername(username);
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail(email);
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+
+    private static Workout createWorkout(String name, LocalDateTime start, RegisteredUser user, List<Exercise> exercises) {
+        return Workout.builder()
+                .name(name)
+                .start(start)
+                .durationInMinutes(60)
+                .exercises(exercises)
+                .user(user)
+                .build();
+    }
+}
@@ -0,0 +1,144 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.ExportFormat;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutImportSummary;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({WorkoutImportService.class, WorkoutExportService.class, WorkoutFileCodec.class,
+        WorkoutRollupService.class, WorkoutChangeLog.class, DataVersionService.class,
+        UserLockService.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+public class WorkoutImportServiceTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutImportService workoutImportService;
+
+    @Autowired
+    private WorkoutExportService workoutExportService;
+
+    @Autowired
+    private WorkoutRepository workoutRepository;
+
+    private RegisteredUser testUser;
+    private RegisteredUser otherUser;
+    private Exercise squat;
+
+    @BeforeEach
+    void setUp() {
+        testUser = entityManager.persist(createUser("testuser", "test@example.com"));
+        otherUser = entityManager.persist(createUser("otheruser", "other@example.com"));
+        squat = entityManager.persist(Exercise.builder()
+                .name("Squat")
+                .category(Exercise.Category.STRENGTH)
+                .muscleGroup(Exercise.MuscleGroup.QUADS)
+                .sets(3)
+                .repetitions(10)
+                .build());
+        // Stored workout from 12:00 to 13:00 on 2024-01-10.
+        entityManager.persist(Workout.builder()
+                .name("Stored")
+                .start(LocalDateTime.of(2024, 1, 10, 12, 0))
+                .durationInMinutes(60)
+                .user(testUser)
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("Valid rows are stored and every other row is reported with its reason")
+    @Test
+    void importWorkouts_ShouldStoreValidRowsAndReportTheRest() {
+        String file = String.join("\n",
+                row("Morning", "2024-01-10T08:00:00", 60, "[" + squat.getId() + "]"),
+                row("Touches stored", "2024-01-10T11:00:00", 60, "[]"),
+                row("Too short", "2024-01-11T08:00:00", 5, "[]"),
+                row("Unknown exercise", "2024-01-12T08:00:00", 60, "[999999]"),
+                row("Evening", "2024-01-10T18:00:00", 90, "[]"),
+                row("Overlaps evening", "2024-01-10T19:00:00", 30, "[]"),
+                "{\"name\":\"Bad date\",\"start\":\"yesterday\",\"durationInMinutes\":60}");
+
+        WorkoutImportSummary summary = workoutImportService.importWorkouts(testUser.getId(), ExportFormat.NDJSON,
+                new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(2, summary.accepted());
+        assertEquals(5, summary.rejected());
+        assertEquals(List.of(2L, 3L, 4L, 6L, 7L),
+                summary.rejections().stream().map(WorkoutImportSummary.Rejection::row).toList());
+        assertEquals("Overlaps an existing workout", summary.rejections().get(0).reason());
+        assertTrue(summary.rejections().get(1).reason().startsWith("durationInMinutes"));
+        assertEquals("Unknown exercise ids: [999999]", summary.rejections().get(2).reason());
+        assertEquals("Overlaps an earlier row of the import", summary.rejections().get(3).reason());
+        assertTrue(summary.rejections().get(4).reason().startsWith("Unreadable record"));
+
+        List<WorkoutView> stored = workoutRepository.findViewsBetween(testUser.getId(), null, null, WorkoutField.ALL);
+        assertEquals(List.of("Evening", "Stored", "Morning"), stored.stream().map(WorkoutView::name).toList());
+        assertEquals(List.of(squat.getId()), workoutRepository.findExerciseViewsBetween(testUser.getId(), null, null)
+                .stream().filter(exercise -> exercise.workoutId().equals(stored.getLast().id()))
+                .map(exercise -> exercise.exercise().id()).toList());
+    }
+
+    @DisplayName("A CSV export can be imported again as is")
+    @Test
+    void importWorkouts_ShouldReadBackACsvExport() throws Exception {
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        workoutExportService.openExport(testUser.getId(), ExportFormat.CSV).writeTo(exported);
+
+        WorkoutImportSummary summary = workoutImportService.importWorkouts(otherUser.getId(), ExportFormat.CSV,
+                new ByteArrayInputStream(exported.toByteArray()));
+
+        assertEquals(new WorkoutImportSummary(1, 0, List.of()), summary);
+        WorkoutView copy = workoutRepository.findViewsBetween(otherUser.getId(), null, null, WorkoutField.ALL)
+                .getFirst();
+        assertEquals("Stored", copy.name());
+        assertEquals(LocalDateTime.of(2024, 1, 10, 12, 0), copy.start());
+        assertTrue(workoutRepository.findExerciseViewsBetween(otherUser.getId(), null, null).isEmpty());
+    }
+
+    private static String row(String name, String start, int duration, String exerciseIds) {
+        return String.format("{\"name\":\"%s\",\"start\":\"%s\",\"durationInMinutes\":%d,\"exerciseIds\":%s}",
+                name, start, duration, exerciseIds);
+    }
+
+    private static RegisteredUser createUser(String username, String email) {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername(username);
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail(email);
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+}
@@ -0,0 +1,86 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.dto.ResponseFormat;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WorkoutResponseCacheTest {
+    @Mock
+    private DataVersionService dataVersionService;
+
+    private WorkoutResponseCache workoutResponseCache;
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        workoutResponseCache = new WorkoutResponseCache(dataVersionService, new ObjectMapper(),
+                new MappingJackson2CborHttpMessageConverter(), new MappingJackson2SmileHttpMessageConverter(),
+                1024 * 1024, Duration.ofMinutes(10));
+    }
+
+    @Test
+    @DisplayName("A response is computed once per data version")
+    public void get_ShouldReuseResponseWhileVersionIsUnchanged() {
+        when(dataVersionService.currentVersion(1L)).thenReturn(3L, 3L, 4L);
+
+        WorkoutResponseCache.CachedResponse first = workoutResponseCache.get(1L, "all", ResponseFormat.JSON, () -> compute(null));
+        WorkoutResponseCache.CachedResponse second = workoutResponseCache.get(1L, "all", ResponseFormat.JSON, () -> compute(null));
+        WorkoutResponseCache.CachedResponse third = workoutResponseCache.get(1L, "all", ResponseFormat.JSON, () -> compute(null));
+
+        assertSame(first, second);
+        assertEquals(2, computations.get());
+        // Same content after the write, so clients holding the old ETag still get 304.
+        assertEquals(first.etag(), third.etag());
+        assertEquals("[\"a\"]", new String(first.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("A response is recomputed once it has passed its validity")
+    public void get_ShouldRecomputeAfterValidUntil() {
+        when(dataVersionService.currentVersion(1L)).thenReturn(3L);
+
+        workoutResponseCache.get(1L, "report", ResponseFormat.JSON, () -> compute(LocalDateTime.now().minusSeconds(1)));
+        workoutResponseCache.get(1L, "report", ResponseFormat.JSON, () -> compute(LocalDateTime.now().plusHours(1)));
+        workoutResponseCache.get(1L, "report", ResponseFormat.JSON, () -> compute(null));
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    @DisplayName("Responses are kept apart per user, variant and format")
+    public void get_ShouldSeparateUsersAndVariants() {
+        when(dataVersionService.currentVersion(anyLong())).thenReturn(1L);
+
+        workoutResponseCache.get(1L, "all", ResponseFormat.JSON, () -> compute(null));
+        workoutResponseCache.get(2L, "all", ResponseFormat.JSON, () -> compute(null));
+        workoutResponseCache.get(1L, "report", ResponseFormat.JSON, () -> compute(null));
+        WorkoutResponseCache.CachedResponse cbor = workoutResponseCache.get(1L, "all", ResponseFormat.CBOR,
+                () -> compute(null));
+
+        assertEquals(4, computations.get());
+        // A one-element array holding the one-character text "a".
+        assertArrayEquals(new byte[]{(byte) 0x81, 0x61, 'a'}, cbor.body());
+    }
+
+    private WorkoutResponseCache.Computed compute(LocalDateTime validUntil) {
+        computations.incrementAndGet();
+        return new WorkoutResponseCache.Computed(List.of("a"), validUntil);
+    }
+}
@@ -0,0 +1,172 @@
+package org.mhacioglu.peaktrackserver.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mhacioglu.peaktrackserver.dto.ReportPeriod;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPeriodTotals;
+import org.mhacioglu.peaktrackserver.model.Exercise;
+import org.mhacioglu.peaktrackserver.model.RegisteredUser;
+import org.mhacioglu.peaktrackserver.model.Workout;
+import org.mhacioglu.peaktrackserver.model.WorkoutDailyRollup;
+import org.mhacioglu.peaktrackserver.repository.WorkoutDailyRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DataJpaTest
+@Import({WorkoutService.class, WorkoutRollupService.class, WorkoutChangeLog.class,
+        DataVersionService.class, UserLockService.class, WorkoutArchiveService.class, SimpleMeterRegistry.class})
+public class WorkoutRollupServiceTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private WorkoutService workoutService;
+
+    @Autowired
+    private WorkoutRollupService workoutRollupService;
+
+    @Autowired
+    private WorkoutDailyRollupRepository workoutDailyRollupRepository;
+
+    private RegisteredUser testUser;
+    private Exercise run;
+    private Exercise squat;
+
+    @BeforeEach
+    void setUp() {
+        testUser = entityManager.persist(createUser());
+        run = entityManager.persist(createExercise("Run", Exercise.Category.CARDIO));
+        squat = entityManager.persist(createExercise("Squat", Exercise.Category.STRENGTH));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @DisplayName("Creates, updates and deletes keep the daily rollup in step")
+    @Test
+    void writes_ShouldKeepDailyRollupInStep() {
+        LocalDate day = LocalDate.of(2024, 1, 10);
+        // Clients may send exercises with only their ids set.
+        Workout morning = workoutService.addWorkout(workout("Morning", day.atTime(8, 0), 60, idOnly(run), idOnly(squat)), testUser.getId());
+        Workout evening = workoutService.addWorkout(workout("Evening", day.atTime(18, 0), 30, idOnly(run)), testUser.getId());
+
+        WorkoutDailyRollup rollup = rollupOf(day);
+        assertEquals(2, rollup.getSessions());
+        assertEquals(90, rollup.getTotalMinutes());
+        assertEquals(90, rollup.getCardioMinutes());
+        assertEquals(60, rollup.getStrengthMinutes());
+
+        workoutService.updateWorkout(Workout.builder().id(morning.getId()).durationInMinutes(45).build(), testUser.getId());
+        rollup = rollupOf(day);
+        assertEquals(75, rollup.getTotalMinutes());
+        assertEquals(45, rollup.getStrengthMinutes());
+
+        workoutService.updateWorkout(Workout.builder().id(evening.getId())
+                .start(day.plusDays(1).atTime(18, 0)).durationInMinutes(30).build(), testUser.getId());
+        assertEquals(1, rollupOf(day).getSessions());
+        assertEquals(30, rollupOf(day.plusDays(1)).getCardioMinutes());
+
+        workoutService.deleteWorkout(morning.getId(), testUser.getId());
+        entityManager.flush();
+        assertTrue(workoutDailyRollupRepository.findById(new WorkoutDailyRollup.Key(testUser.getId(), day)).isEmpty());
+    }
+
+    @DisplayName("A batch moves the contributions of everything it touches")
+    @Test
+    void applyBatch_ShouldUpdateRollups() {
+        LocalDate day = LocalDate.of(2024, 1, 10);
+        Workout kept = workoutService.addWorkout(workout("Kept", day.atTime(8, 0), 60, idOnly(run)), testUser.getId());
+        Workout dropped = workoutService.addWorkout(workout("Dropped", day.atTime(12, 0), 60), testUser.getId());
+
+        workoutService.applyBatch(List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(dropped.getId()).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.UPDATE)
+                        .workout(Workout.builder().id(kept.getId()).durationInMinutes(20).build()).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE)
+                        .workout(workout("New", day.atTime(18, 0), 40, idOnly(squat))).build()
+        ), testUser.getId());
+
+        WorkoutDailyRollup rollup = rollupOf(day);
+        assertEquals(2, rollup.getSessions());
+        assertEquals(60, rollup.getTotalMinutes());
+        assertEquals(20, rollup.getCardioMinutes());
+        assertEquals(40, rollup.getStrengthMinutes());
+    }
+
+    @DisplayName("Reports fold the daily rollups into weeks, months and years")
+    @Test
+    void report_ShouldGroupDaysByPeriod() {
+        // Sunday 2024-01-07, Monday 2024-01-08 and Wednesday 2024-01-31.
+        workoutService.addWorkout(workout("Sunday", LocalDateTime.of(2024, 1, 7, 8, 0), 30, idOnly(run)), testUser.getId());
+        workoutService.addWorkout(workout("Monday", LocalDateTime.of(2024, 1, 8, 8, 0), 40), testUser.getId());
+        workoutService.addWorkout(workout("Month end", LocalDateTime.of(2024, 1, 31, 8, 0), 50), testUser.getId());
+        entityManager.flush();
+
+        List<WorkoutPeriodTotals> weekly = workoutRollupService.report(testUser.getId(), ReportPeriod.WEEKLY, null, null);
+        assertEquals(List.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 29)),
+                weekly.stream().map(WorkoutPeriodTotals::periodStart).toList());
+        assertEquals(30, weekly.getFirst().minutesByCategory().get(Exercise.Category.CARDIO));
+
+        List<WorkoutPeriodTotals> monthly = workoutRollupService.report(testUser.getId(), ReportPeriod.MONTHLY,
+                LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 31));
+        assertEquals(1, monthly.size());
+        assertEquals(2, monthly.getFirst().sessions());
+        assertEquals(90, monthly.getFirst().totalMinutes());
+        assertEquals(0, monthly.getFirst().minutesByCategory().get(Exercise.Category.CARDIO));
+    }
+
+    private WorkoutDailyRollup rollupOf(LocalDate day) {
+        entityManager.flush();
+        return workoutDailyRollupRepository.findById(new WorkoutDailyRollup.Key(testUser.getId(), day)).orElseThrow();
+    }
+
+    private static Workout workout(String name, LocalDateTime start, int duration, Exercise... exercises) {
+        return Workout.builder()
+                .name(name)
+                .start(start)
+                .durationInMinutes(duration)
+                .exercises(new ArrayList<>(List.of(exercises)))
+                .build();
+    }
+
+    private static Exercise idOnly(Exercise exercise) {
+        return Exercise.builder().id(exercise.getId()).build();
+    }
+
+    private static Exercise createExercise(String name, Exercise.Category category) {
+        return Exercise.builder()
+                .name(name)
+                .category(category)
+                .muscleGroup(Exercise.MuscleGroup.QUADS)
+                .sets(3)
+                .repetitions(10)
+                .build();
+    }
+
+    private static RegisteredUser createUser() {
+        RegisteredUser user = new RegisteredUser();
+        user.setUsername("testuser");
+        user.setPassword("password123");
+        user.setName("Test");
+        user.setLastName("User");
+        user.setEmail("test@example.com");
+        user.setAge(25);
+        user.setGender(RegisteredUser.Gender.MALE);
+        user.setHeight(175);
+        user.setWeight(70);
+        return user;
+    }
+}
@@ -4,21 +4,36 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mhacioglu.peaktrackserver.dto.ExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchOperation;
+import org.mhacioglu.peaktrackserver.dto.WorkoutBatchResult;
+import org.mhacioglu.peaktrackserver.dto.WorkoutCursor;
+import org.mhacioglu.peaktrackserver.dto.WorkoutExerciseView;
+import org.mhacioglu.peaktrackserver.dto.WorkoutField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutPage;
+import org.mhacioglu.peaktrackserver.dto.WorkoutSummaryField;
+import org.mhacioglu.peaktrackserver.dto.WorkoutView;
 import org.mhacioglu.peaktrackserver.exceptions.InvalidWorkoutDataException;
+import org.mhacioglu.peaktrackserver.exceptions.WorkoutBatchException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutNotFoundException;
 import org.mhacioglu.peaktrackserver.exceptions.WorkoutTimeConflictException;
 import org.mhacioglu.peaktrackserver.model.Exercise;
 import org.mhacioglu.peaktrackserver.model.RegisteredUser;
 import org.mhacioglu.peaktrackserver.model.Workout;
 import org.mhacioglu.peaktrackserver.model.WorkoutSummary;
+import org.mhacioglu.peaktrackserver.repository.ArchivedWorkoutRepository;
 import org.mhacioglu.peaktrackserver.repository.WorkoutRepository;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,6 +47,18 @@ public class WorkoutServiceTest {
     private Workout ongoingWorkout;
     @Mock
     private WorkoutRepository workoutRepository;
+    @Mock
+    private UserLockService userLockService;
+    @Mock
+    private WorkoutRollupService workoutRollupService;
+    @Mock
+    private DataVersionService dataVersionService;
+    @Mock
+    private WorkoutChangeLog workoutChangeLog;
+    @Mock
+    private ArchivedWorkoutRepository archivedWorkoutRepository;
+    @Mock
+    private WorkoutArchiveService workoutArchiveService;
     @InjectMocks
     private WorkoutService workoutService;
 
@@ -49,6 +76,15 @@ public class WorkoutServiceTest {
                 .build();
     }
 
+    private static WorkoutView view(Workout workout) {
+        return new WorkoutView(workout.getId(), workout.getName(), workout.getStart(),
+                workout.getDurationInMinutes(), workout.getComment());
+    }
+
+    private static WorkoutCursor key(Workout workout) {
+        return new WorkoutCursor(workout.getStart(), workout.getId());
+    }
+
     @BeforeEach
     public void setup() {
         currentRegisteredUser = new RegisteredUser();
@@ -106,74 +142,46 @@ public class WorkoutServiceTest {
     public void listAllWorkoutsBetweenDates() {
         LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
         LocalDateTime tenHoursLater = LocalDateTime.now().plusHours(10);
-        List<Workout> workouts = workoutService.getWorkoutsBetween(null, null, currentRegisteredUser);
-
-        assertEquals(3, workouts.size());
-        assertTrue(workouts.getFirst().getStart().isAfter(workouts.get(1).getStart()));
-        assertTrue(workouts.get(1).getStart().isAfter(workouts.get(2).getStart()));
-
-        workouts = workoutService.getWorkoutsBetween(oneHourAgo, null, currentRegisteredUser);
-
-        assertEquals(2, workouts.size());
-        assertTrue(workouts.getFirst().getStart().isAfter(workouts.get(1).getStart()));
-
-        workouts = workoutService.getWorkoutsBetween(null, tenHoursLater, currentRegisteredUser);
-
-        assertEquals(2, workouts.size());
-        assertTrue(workouts.getFirst().getStart().isAfter(workouts.get(1).getStart()));
-
-        workouts = workoutService.getWorkoutsBetween(oneHourAgo, tenHoursLater, currentRegisteredUser);
-        assertEquals(1, workouts.size());
-        assertEquals(3L, workouts.getFirst().getId());
+        when(workoutRepository.findViewsBetween(eq(1L), eq(oneHourAgo), eq(tenHoursLater), anySet()))
+                .thenReturn(List.of(view(ongoingWorkout), view(pastWorkout)));
+        ExerciseView plank = ExerciseView.of(createTestExercise("Plank", "Core strengthening exercise",
+                Exercise.Category.FLEX, Exercise.MuscleGroup.ABS, 3, 1, 0));
+        when(workoutRepository.findExerciseViewsBetween(1L, oneHourAgo, tenHoursLater))
+                .thenReturn(List.of(new WorkoutExerciseView(1L, plank)));
+
+        List<WorkoutView> workouts = workoutService.getWorkoutsBetween(oneHourAgo, tenHoursLater, 1L, WorkoutField.ALL);
+        assertEquals(List.of(3L, 1L), workouts.stream().map(WorkoutView::id).toList());
+        assertEquals(List.of(), workouts.get(0).exercises());
+        assertEquals(List.of(plank), workouts.get(1).exercises());
+
+        List<WorkoutView> withoutExercises = workoutService.getWorkoutsBetween(oneHourAgo, tenHoursLater, 1L,
+                EnumSet.of(WorkoutField.ID, WorkoutField.NAME));
+        assertNull(withoutExercises.getFirst().exercises());
 
         assertThrows(InvalidWorkoutDataException.class, () ->
-                workoutService.getWorkoutsBetween(tenHoursLater, oneHourAgo, currentRegisteredUser));
+                workoutService.getWorkoutsBetween(tenHoursLater, oneHourAgo, 1L, WorkoutField.ALL));
+        verify(workoutRepository, times(2)).findViewsBetween(anyLong(), any(), any(), anySet());
+        verify(workoutRepository, times(1)).findExerciseViewsBetween(anyLong(), any(), any());
 
     }
 
     @Test
-    @DisplayName("Return the list of workouts sorted by their start date which have ended in the past")
+    @DisplayName("Past workouts are summarized as of the time of the call")
     public void listAllPastWorkouts_ShouldReturnFinishedWorkouts() {
-        Workout w1 = Workout.builder()
-                .id(999L)
-                .name("A very old workout")
-                .start(LocalDateTime.now().minusYears(50))
-                .durationInMinutes(60)
-                .user(currentRegisteredUser)
-                .build();
-
-        Workout w2 = Workout.builder()
-                .id(333L)
-                .name("A recently finished workout")
-                .start(LocalDateTime.now().minusDays(2))
-                .durationInMinutes(60)
-                .user(currentRegisteredUser)
-                .build();
-
-        currentRegisteredUser.addWorkout(w1);
-        currentRegisteredUser.addWorkout(w2);
-
-
-        List<WorkoutSummary> pastWorkouts = workoutService.listAllPastWorkouts(currentRegisteredUser);
-
-        assertEquals(3, pastWorkouts.size());
-        for (int i = 0; i < pastWorkouts.size() - 1; i++) {
-            LocalDateTime start1 = pastWorkouts.get(i).getWorkoutStart();
-            LocalDateTime start2 = pastWorkouts.get(i + 1).getWorkoutStart();
-
-            LocalDateTime end1 = start1.plusMinutes(pastWorkouts.get(i).getWorkoutDuration());
-            LocalDateTime end2 = start2.plusMinutes(pastWorkouts.get(i + 1).getWorkoutDuration());
-
-            assertTrue(LocalDateTime.now().isAfter(end1) && LocalDateTime.now().isAfter(end2));
-            assertTrue(start1.isAfter(start2));
-        }
-
+        WorkoutSummary summary = new WorkoutSummary(pastWorkout.getName(), pastWorkout.getStart(),
+                pastWorkout.getDurationInMinutes());
+        LocalDateTime before = LocalDateTime.now();
+        when(workoutRepository.findSummariesEndedBefore(eq(1L),
+                argThat(time -> !time.isBefore(before) && !time.isAfter(LocalDateTime.now())),
+                eq(WorkoutSummaryField.ALL)))
+                .thenReturn(List.of(summary));
+
+        assertEquals(List.of(summary), workoutService.listAllPastWorkouts(1L, WorkoutSummaryField.ALL));
     }
 
     @Test
     @DisplayName("Return the newly added workout")
     public void addWorkout_ShouldReturnTheNewWorkout() {
-        //currentUser.setWorkouts(new ArrayList<>());
         Workout req = Workout.builder()
                 .name("New workout")
                 .start(LocalDateTime.now().plusWeeks(2))
@@ -188,37 +196,43 @@ public class WorkoutServiceTest {
                 .user(currentRegisteredUser)
                 .build();
 
+        when(workoutRepository.findOverlapping(eq(1L), eq(req.getStart()), eq(req.getStart().plusMinutes(80)),
+                isNull(), any(Limit.class))).thenReturn(List.of());
+        when(userLockService.lockForWrite(1L, "create")).thenReturn(currentRegisteredUser);
         when(workoutRepository.save(any(Workout.class)))
                 .thenReturn(res);
 
-        Workout newWorkout = workoutService.addWorkout(req, currentRegisteredUser);
+        Workout newWorkout = workoutService.addWorkout(req, 1L);
         assertNotNull(newWorkout);
         assertEquals(4L, newWorkout.getId());
         assertEquals(res.getName(), newWorkout.getName());
         assertEquals(res.getStart(), newWorkout.getStart());
-        assertEquals(4, currentRegisteredUser.getWorkouts().size());
-        verify(workoutRepository, times(1)).save(any(Workout.class));
+        assertSame(currentRegisteredUser, req.getUser());
+        InOrder inOrder = inOrder(userLockService, workoutRepository);
+        inOrder.verify(userLockService).lockForWrite(1L, "create");
+        inOrder.verify(workoutRepository).findOverlapping(any(), any(), any(), any(), any());
+        inOrder.verify(workoutRepository).save(any(Workout.class));
     }
 
     @Test
     @DisplayName("Delete the workout by the given ID from the database")
     public void deleteWorkout_ShouldDeleteWorkout() {
-        workoutService.deleteWorkout(pastWorkout.getId(), currentRegisteredUser);
-        assertEquals(2, currentRegisteredUser.getWorkouts().size());
-        assertFalse(currentRegisteredUser.getWorkouts().stream()
-                .anyMatch(workout -> workout.getId().longValue() == pastWorkout.getId().longValue()));
-        assertNull(pastWorkout.getUser());
-        verify(workoutRepository, times(1)).deleteById(anyLong());
+        when(workoutRepository.findByIdAndUserId(pastWorkout.getId(), 1L)).thenReturn(Optional.of(pastWorkout));
+
+        workoutService.deleteWorkout(pastWorkout.getId(), 1L);
+
+        verify(workoutRepository, times(1)).delete(pastWorkout);
     }
 
     @Test
     @DisplayName("Delete a workout which doesn't belong to the user")
     public void deleteWorkout_ShouldReturnWorkoutNotFoundException() {
+        when(workoutRepository.findByIdAndUserId(4L, 1L)).thenReturn(Optional.empty());
 
         assertThrows(WorkoutNotFoundException.class,
-                () -> workoutService.deleteWorkout(4L, currentRegisteredUser));
+                () -> workoutService.deleteWorkout(4L, 1L));
 
-        verify(workoutRepository, never()).deleteById(anyLong());
+        verify(workoutRepository, never()).delete(any(Workout.class));
     }
 
     @Test
@@ -239,10 +253,11 @@ public class WorkoutServiceTest {
                 .user(currentRegisteredUser)
                 .build();
 
+        when(workoutRepository.findByIdAndUserId(pastWorkout.getId(), 1L)).thenReturn(Optional.of(pastWorkout));
         when(workoutRepository.save(any(Workout.class)))
                 .thenReturn(res);
 
-        Workout updated = workoutService.updateWorkout(req, currentRegisteredUser);
+        Workout updated = workoutService.updateWorkout(req, 1L);
         assertNotNull(updated);
         assertEquals(res.getId(), updated.getId());
         assertEquals(res.getName(), updated.getName());
@@ -258,8 +273,12 @@ public class WorkoutServiceTest {
                 .start(LocalDateTime.now().minusMinutes(30))
                 .build();
 
+        when(userLockService.lockForWrite(1L, "create")).thenReturn(currentRegisteredUser);
+        when(workoutRepository.findOverlapping(eq(1L), eq(req.getStart()), eq(req.getStart()),
+                isNull(), any(Limit.class))).thenReturn(List.of(ongoingWorkout));
+
         assertThrows(WorkoutTimeConflictException.class,
-                () -> workoutService.addWorkout(req, currentRegisteredUser));
+                () -> workoutService.addWorkout(req, 1L));
 
         verify(workoutRepository, never()).save(any(Workout.class));
 
@@ -273,9 +292,148 @@ public class WorkoutServiceTest {
                 .build();
 
         assertThrows(InvalidWorkoutDataException.class,
-                () -> workoutService.updateWorkout(req, currentRegisteredUser));
+                () -> workoutService.updateWorkout(req, 1L));
 
         verify(workoutRepository, never()).save(any(Workout.class));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("A full page carries the cursor of its last workout, the last page carries none")
+    public void getWorkoutPage_ShouldReturnNextCursorOnlyWhenMoreRowsExist() {
+        when(workoutRepository.findPageKeys(eq(1L), isNull(), isNull(), isNull(), isNull(), eq(Limit.of(3))))
+                .thenReturn(List.of(key(futureWorkout), key(ongoingWorkout), key(pastWorkout)));
+        when(workoutRepository.findViewsByIdIn(List.of(2L, 3L), WorkoutField.ALL))
+                .thenReturn(List.of(view(futureWorkout), view(ongoingWorkout)));
+
+        WorkoutPage page = workoutService.getWorkoutPage(null, null, 1L, 2, null, WorkoutField.ALL);
+
+        assertEquals(2, page.workouts().size());
+        WorkoutCursor cursor = WorkoutCursor.decode(page.nextCursor());
+        assertEquals(ongoingWorkout.getId(), cursor.id());
+        assertEquals(ongoingWorkout.getStart(), cursor.start());
+
+        when(workoutRepository.findPageKeys(eq(1L), isNull(), isNull(),
+                eq(ongoingWorkout.getStart()), eq(ongoingWorkout.getId()), eq(Limit.of(3))))
+                .thenReturn(List.of(key(pastWorkout)));
+        when(workoutRepository.findViewsByIdIn(List.of(1L), EnumSet.of(WorkoutField.ID)))
+                .thenReturn(List.of(view(pastWorkout)));
+
+        WorkoutPage lastPage = workoutService.getWorkoutPage(null, null, 1L, 2, page.nextCursor(),
+                EnumSet.of(WorkoutField.ID));
+        assertEquals(List.of(view(pastWorkout)), lastPage.workouts());
+        assertNull(lastPage.nextCursor());
+        verify(workoutRepository, never()).findExerciseViewsByWorkoutIdIn(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Malformed cursors and out-of-range page sizes are rejected")
+    public void getWorkoutPage_ShouldRejectInvalidArguments() {
+        assertThrows(InvalidWorkoutDataException.class,
+                () -> workoutService.getWorkoutPage(null, null, 1L, 10, "not-a-cursor", WorkoutField.ALL));
+        assertThrows(InvalidWorkoutDataException.class,
+                () -> workoutService.getWorkoutPage(null, null, 1L, 0, null, WorkoutField.ALL));
+        verify(workoutRepository, never()).findPageKeys(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("A batch is applied as a whole and reports one result per operation")
+    public void applyBatch_ShouldApplyAllOperations() {
+        Workout newWorkout = Workout.builder()
+                .name("Planned")
+                .start(LocalDateTime.now().plusDays(10))
+                .durationInMinutes(45)
+                .build();
+        List<WorkoutBatchOperation> operations = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE).workout(newWorkout).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.UPDATE)
+                        .workout(Workout.builder().id(2L).name("Renamed").build()).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(1L).build());
+
+        when(userLockService.lockForWrite(1L, "batch")).thenReturn(currentRegisteredUser);
+        when(workoutRepository.findAllByUserIdAndIdIn(eq(1L), any()))
+                .thenReturn(List.of(pastWorkout, futureWorkout));
+        when(workoutRepository.findOverlapping(eq(1L), any(), any(), isNull(), any(Limit.class)))
+                .thenReturn(List.of(futureWorkout));
+
+        List<WorkoutBatchResult> results = workoutService.applyBatch(operations, 1L);
+
+        assertEquals(3, results.size());
+        assertSame(currentRegisteredUser, newWorkout.getUser());
+        assertEquals("Renamed", futureWorkout.getName());
+        assertEquals(2L, results.get(1).getWorkoutId());
+        assertEquals(1L, results.get(2).getWorkoutId());
+        assertNull(results.get(2).getWorkout());
+        verify(workoutRepository, times(1)).deleteAll(List.of(pastWorkout));
+        verify(workoutRepository, times(1)).saveAll(List.of(newWorkout));
+        verify(workoutRepository, times(1)).findOverlapping(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Two workouts of the same batch that overlap fail the batch at the later operation")
+    public void applyBatch_ShouldDetectConflictsInsideTheBatch() {
+        LocalDateTime start = LocalDateTime.now().plusDays(20);
+        List<WorkoutBatchOperation> operations = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE)
+                        .workout(Workout.builder().name("First").start(start).durationInMinutes(60).build()).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE)
+                        .workout(Workout.builder().name("Second").start(start.plusMinutes(30)).durationInMinutes(60).build())
+                        .build());
+
+        when(userLockService.lockForWrite(1L, "batch")).thenReturn(currentRegisteredUser);
+
+        WorkoutBatchException exception = assertThrows(WorkoutBatchException.class,
+                () -> workoutService.applyBatch(operations, 1L));
+        assertEquals(1, exception.getOperationIndex());
+        assertInstanceOf(WorkoutTimeConflictException.class, exception.getFailure());
+        verify(workoutRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("A batch workout that overlaps a stored workout fails, one moved out of the way does not")
+    public void applyBatch_ShouldCheckAgainstTheFinalStateOfStoredWorkouts() {
+        // The ongoing workout is moved away and a new one takes its old slot.
+        List<WorkoutBatchOperation> operations = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.UPDATE)
+                        .workout(Workout.builder().id(3L).start(LocalDateTime.now().plusDays(30))
+                                .durationInMinutes(60).build()).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.CREATE)
+                        .workout(Workout.builder().name("In the old slot").start(ongoingWorkout.getStart())
+                                .durationInMinutes(60).build()).build());
+
+        when(userLockService.lockForWrite(1L, "batch")).thenReturn(currentRegisteredUser);
+        when(workoutRepository.findAllByUserIdAndIdIn(eq(1L), any())).thenReturn(List.of(ongoingWorkout));
+        when(workoutRepository.findOverlapping(eq(1L), any(), any(), isNull(), any(Limit.class)))
+                .thenReturn(List.of(ongoingWorkout, pastWorkout, futureWorkout));
+
+        assertEquals(2, workoutService.applyBatch(operations, 1L).size());
+
+        // Moving it onto the future workout conflicts with that one.
+        List<WorkoutBatchOperation> conflicting = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.UPDATE)
+                        .workout(Workout.builder().id(3L).start(futureWorkout.getStart().minusMinutes(10))
+                                .durationInMinutes(60).build()).build());
+
+        WorkoutBatchException exception = assertThrows(WorkoutBatchException.class,
+                () -> workoutService.applyBatch(conflicting, 1L));
+        assertEquals(0, exception.getOperationIndex());
+        assertInstanceOf(WorkoutTimeConflictException.class, exception.getFailure());
+    }
+
+    @Test
+    @DisplayName("An operation on a workout the user doesn't own fails the batch with its index")
+    public void applyBatch_ShouldReportMissingWorkouts() {
+        List<WorkoutBatchOperation> operations = List.of(
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(1L).build(),
+                WorkoutBatchOperation.builder().type(WorkoutBatchOperation.Type.DELETE).workoutId(1L).build());
+
+        when(userLockService.lockForWrite(1L, "batch")).thenReturn(currentRegisteredUser);
+        when(workoutRepository.findAllByUserIdAndIdIn(eq(1L), any())).thenReturn(List.of(pastWorkout));
+
+        WorkoutBatchException exception = assertThrows(WorkoutBatchException.class,
+                () -> workoutService.applyBatch(operations, 1L));
+        assertEquals(1, exception.getOperationIndex());
+        assertInstanceOf(WorkoutNotFoundException.class, exception.getFailure());
+        verify(workoutRepository, never()).deleteAll(any());
+    }
+
+}